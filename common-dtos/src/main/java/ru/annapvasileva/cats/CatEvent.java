@@ -0,0 +1,26 @@
+package ru.annapvasileva.cats;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.UUID;
+
+// Published by the pet service on cat.exchange with the routing key "cat.event.<type>".
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatEvent {
+    private CatEventType type;
+    private UUID catId;
+    // Null unless the event comes from the transaction that created or updated the cat itself: friendship changes
+    // do not read the owner, so they cannot report one that was already replaced.
+    private UUID ownerId;
+    private UUID friendId;
+
+    public CatEvent(CatEventType type, UUID catId, UUID ownerId) {
+        this(type, catId, ownerId, null);
+    }
+}
@@ -0,0 +1,10 @@
+package ru.annapvasileva.cats;
+
+public enum CatEventType {
+    CREATED,
+    UPDATED,
+    DELETED,
+    // Single edge changes, carry the other cat in friendId. Both cats also get an UPDATED event.
+    FRIENDSHIP_ADDED,
+    FRIENDSHIP_REMOVED,
+}
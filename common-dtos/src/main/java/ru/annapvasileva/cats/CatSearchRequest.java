@@ -0,0 +1,25 @@
+package ru.annapvasileva.cats;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+// Every filter is optional; the ones that are set must all match. Both birth dates are inclusive.
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatSearchRequest {
+    private String namePrefix;
+    private String breed;
+    private Colors color;
+    private LocalDate bornFrom;
+    private LocalDate bornTo;
+    private int page;
+    private int size;
+    private String sortBy;
+    private String sortDir;
+}
@@ -0,0 +1,20 @@
+package ru.annapvasileva.cats;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Map;
+
+// Colors are keyed by name. ownerCats is only set when the counts for one owner were requested.
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatStatsDto {
+    private long total;
+    private Map<String, Long> byColor;
+    private Map<String, Long> byBreed;
+    private Long ownerCats;
+}
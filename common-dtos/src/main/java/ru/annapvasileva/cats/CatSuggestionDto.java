@@ -0,0 +1,18 @@
+package ru.annapvasileva.cats;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.UUID;
+
+// A cat that is not a friend yet, ranked by the number of friends in common.
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatSuggestionDto {
+    private UUID catId;
+    private int commonFriends;
+}
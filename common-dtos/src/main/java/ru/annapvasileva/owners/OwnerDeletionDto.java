@@ -0,0 +1,23 @@
+package ru.annapvasileva.owners;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+// Progress of an owner deletion; completedAt is set once the owner itself is deleted.
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class OwnerDeletionDto {
+    private UUID ownerId;
+    private OwnerDeletionStatus status;
+    private boolean catsDeleted;
+    private boolean usersDeleted;
+    private Instant requestedAt;
+    private Instant completedAt;
+}
@@ -0,0 +1,6 @@
+package ru.annapvasileva.owners;
+
+public enum OwnerDeletionStatus {
+    IN_PROGRESS,
+    COMPLETED,
+}
@@ -0,0 +1,18 @@
+package ru.annapvasileva.owners;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.UUID;
+
+// Published by the owner service on owner.exchange with the routing key "owner.event.<type>".
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class OwnerEvent {
+    private OwnerEventType type;
+    private UUID ownerId;
+}
@@ -0,0 +1,9 @@
+package ru.annapvasileva.owners;
+
+public enum OwnerEventType {
+    CREATED,
+    UPDATED,
+    // The owner is hidden from lookups and its cats and users are being deleted; DELETED follows once they are gone.
+    DELETION_REQUESTED,
+    DELETED,
+}
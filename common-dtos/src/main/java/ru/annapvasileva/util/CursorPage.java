@@ -0,0 +1,20 @@
+package ru.annapvasileva.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+// One slice of a keyset listing. nextCursor is null on the last slice,
+// approximateTotal is only filled in when it was requested.
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> content;
+    private String nextCursor;
+    private Long approximateTotal;
+}
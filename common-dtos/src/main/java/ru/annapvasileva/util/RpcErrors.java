@@ -0,0 +1,11 @@
+package ru.annapvasileva.util;
+
+// A reply carrying the HEADER reports a failure instead of a result; the header value says which one.
+public final class RpcErrors {
+    public static final String HEADER = "rpc-error";
+    // A service the replying one depends on did not answer in time.
+    public static final String UPSTREAM_TIMEOUT = "upstream-timeout";
+
+    private RpcErrors() {
+    }
+}
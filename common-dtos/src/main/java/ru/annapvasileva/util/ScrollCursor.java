@@ -0,0 +1,89 @@
+package ru.annapvasileva.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Opaque position in a keyset listing: the sort order plus the sort key and id of the last row returned.
+ * Travels to clients as base64url encoded JSON, so they can only hand it back, not build one.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScrollCursor {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private String sortBy;
+    private String sortDir;
+    private Map<String, String> keys;
+
+    public static ScrollCursor first(String sortBy, String sortDir) {
+        return new ScrollCursor(sortBy, sortDir, Map.of());
+    }
+
+    public static ScrollCursor after(String sortBy, String sortDir, ScrollPosition position) {
+        Map<String, String> keys = new LinkedHashMap<>();
+        ((KeysetScrollPosition) position).getKeys()
+                .forEach((property, value) -> keys.put(property, value.toString()));
+        return new ScrollCursor(sortBy, sortDir, keys);
+    }
+
+    public static ScrollCursor decode(String cursor) {
+        try {
+            ScrollCursor decoded = MAPPER.readValue(Base64.getUrlDecoder().decode(cursor), ScrollCursor.class);
+            if (decoded == null || decoded.sortBy == null || decoded.sortDir == null || decoded.keys == null) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            Sort.Direction.fromString(decoded.sortDir);
+            return decoded;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+    }
+
+    public String encode() {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(MAPPER.writeValueAsBytes(this));
+        } catch (IOException e) {
+            throw new RuntimeException("Error processing request", e);
+        }
+    }
+
+    public Sort toSort() {
+        Sort.Direction direction = Sort.Direction.fromString(sortDir);
+        return Sort.by(direction, sortBy).and(Sort.by(direction, "id"));
+    }
+
+    // Key values are stored as strings; parsers turn them back into the property types.
+    public ScrollPosition toPosition(Map<String, Function<String, Object>> parsers) {
+        if (keys.isEmpty()) {
+            return ScrollPosition.keyset();
+        }
+        Map<String, Object> typedKeys = new LinkedHashMap<>();
+        keys.forEach((property, value) -> {
+            Function<String, Object> parser = parsers.get(property);
+            if (parser == null) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            try {
+                typedKeys.put(property, parser.apply(value));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Malformed cursor", e);
+            }
+        });
+        return ScrollPosition.forward(typedKeys);
+    }
+}
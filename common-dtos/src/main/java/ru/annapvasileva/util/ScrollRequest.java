@@ -0,0 +1,19 @@
+package ru.annapvasileva.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// sortBy and sortDir are only used for the first slice, afterwards the cursor carries them.
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScrollRequest {
+    private String cursor;
+    private int size;
+    private String sortBy;
+    private String sortDir;
+    private boolean withTotal;
+}
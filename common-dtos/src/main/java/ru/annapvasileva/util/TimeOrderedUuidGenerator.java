@@ -0,0 +1,54 @@
+package ru.annapvasileva.util;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+
+import java.util.EnumSet;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class TimeOrderedUuidGenerator implements BeforeExecutionGenerator {
+    private static final long MAX_SEQUENCE = 0xFFF;
+
+    // Last timestamp and the 12-bit sequence used within it, so ids from one JVM are strictly increasing.
+    private static long lastMillis;
+    private static long sequence;
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue, EventType eventType) {
+        return next();
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+
+    public static UUID next() {
+        long millis;
+        long seq;
+        synchronized (TimeOrderedUuidGenerator.class) {
+            millis = Math.max(System.currentTimeMillis(), lastMillis);
+            if (millis == lastMillis) {
+                sequence++;
+                if (sequence > MAX_SEQUENCE) {
+                    // Sequence exhausted within this millisecond: borrow the next one.
+                    millis++;
+                    sequence = 0;
+                }
+            } else {
+                sequence = 0;
+            }
+            lastMillis = millis;
+            seq = sequence;
+        }
+
+        // 48 bits of timestamp, version 7, 12 bits of sequence.
+        long msb = (millis << 16) | 0x7000L | seq;
+        // Variant 10, then 62 random bits.
+        long lsb = (ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(msb, lsb);
+    }
+}
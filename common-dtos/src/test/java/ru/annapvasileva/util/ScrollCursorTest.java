@@ -0,0 +1,85 @@
+package ru.annapvasileva.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ScrollCursorTest {
+    private static final Map<String, Function<String, Object>> PARSERS = Map.of(
+            "name", value -> value,
+            "id", UUID::fromString);
+
+    @Test
+    void roundTripsThePositionOfTheLastRow() {
+        UUID id = UUID.randomUUID();
+        Map<String, Object> keys = new LinkedHashMap<>();
+        keys.put("name", "Барсик & co/+=");
+        keys.put("id", id);
+
+        String encoded = ScrollCursor.after("name", "desc", ScrollPosition.forward(keys)).encode();
+        ScrollCursor decoded = ScrollCursor.decode(encoded);
+
+        assertThat(decoded.getSortBy()).isEqualTo("name");
+        assertThat(decoded.getSortDir()).isEqualTo("desc");
+        KeysetScrollPosition position = (KeysetScrollPosition) decoded.toPosition(PARSERS);
+        assertThat(position.getKeys()).isEqualTo(keys);
+        assertThat(position.getDirection()).isEqualTo(ScrollPosition.Direction.FORWARD);
+    }
+
+    @Test
+    void encodesUrlSafeWithoutPadding() {
+        Map<String, Object> keys = Map.of("name", "???>>>~~~", "id", UUID.randomUUID());
+
+        String encoded = ScrollCursor.after("name", "asc", ScrollPosition.forward(keys)).encode();
+
+        assertThat(encoded.matches("[A-Za-z0-9_-]+")).isTrue();
+    }
+
+    @Test
+    void firstCursorStartsFromTheBeginning() {
+        ScrollPosition position = ScrollCursor.decode(ScrollCursor.first("name", "asc").encode()).toPosition(PARSERS);
+
+        assertThat(position.isInitial()).isTrue();
+    }
+
+    @Test
+    void sortsByTheKeyAndThenById() {
+        Sort sort = ScrollCursor.first("lastName", "desc").toSort();
+
+        assertThat(sort).isEqualTo(Sort.by(Sort.Direction.DESC, "lastName", "id"));
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        assertThatThrownBy(() -> ScrollCursor.decode("not a cursor!")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ScrollCursor.decode(base64("{}"))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ScrollCursor.decode(base64("null"))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ScrollCursor.decode(base64("[1, 2]"))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ScrollCursor.decode(base64("{\"sortBy\":\"name\",\"sortDir\":\"up\",\"keys\":{}}")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsKeysTheListingDoesNotKnow() {
+        ScrollCursor unknownKey = ScrollCursor.decode(base64("{\"sortBy\":\"name\",\"sortDir\":\"asc\",\"keys\":{\"owner\":\"x\"}}"));
+        ScrollCursor badValue = ScrollCursor.decode(base64("{\"sortBy\":\"name\",\"sortDir\":\"asc\",\"keys\":{\"id\":\"x\"}}"));
+
+        assertThatThrownBy(() -> unknownKey.toPosition(PARSERS)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> badValue.toPosition(PARSERS)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static String base64(String json) {
+        return Base64.getUrlEncoder().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
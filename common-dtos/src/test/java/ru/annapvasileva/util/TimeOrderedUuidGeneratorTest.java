@@ -0,0 +1,67 @@
+package ru.annapvasileva.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimeOrderedUuidGeneratorTest {
+
+    @Test
+    void generatesVersion7WithTheCurrentTimestamp() {
+        long before = System.currentTimeMillis();
+        UUID id = TimeOrderedUuidGenerator.next();
+        long after = System.currentTimeMillis();
+
+        assertThat(id.version()).isEqualTo(7);
+        assertThat(id.variant()).isEqualTo(2);
+        long millis = id.getMostSignificantBits() >>> 16;
+        assertThat(millis).isGreaterThanOrEqualTo(before);
+        // Allows for milliseconds borrowed by earlier calls that exhausted their sequence.
+        assertThat(millis).isLessThanOrEqualTo(after + 1000);
+    }
+
+    @Test
+    void idsFromOneThreadAreStrictlyIncreasing() {
+        // Far more ids than one millisecond's 4096 sequence values, so the sequence rolls over many times.
+        UUID previous = TimeOrderedUuidGenerator.next();
+        for (int i = 0; i < 200_000; i++) {
+            UUID next = TimeOrderedUuidGenerator.next();
+            // Unsigned, as PostgreSQL compares uuid values.
+            assertThat(Long.compareUnsigned(next.getMostSignificantBits(), previous.getMostSignificantBits()))
+                    .isGreaterThan(0);
+            previous = next;
+        }
+    }
+
+    @Test
+    void idsFromConcurrentThreadsAreUniqueAndIncreasingPerThread() throws Exception {
+        Set<UUID> all = ConcurrentHashMap.newKeySet();
+        List<CompletableFuture<Boolean>> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(CompletableFuture.supplyAsync(() -> {
+                boolean increasing = true;
+                UUID previous = TimeOrderedUuidGenerator.next();
+                all.add(previous);
+                for (int i = 0; i < 20_000; i++) {
+                    UUID next = TimeOrderedUuidGenerator.next();
+                    increasing &= Long.compareUnsigned(next.getMostSignificantBits(), previous.getMostSignificantBits()) > 0;
+                    all.add(next);
+                    previous = next;
+                }
+                return increasing;
+            }));
+        }
+
+        for (CompletableFuture<Boolean> thread : threads) {
+            assertThat(thread.get()).isTrue();
+        }
+        assertThat(all).hasSize(8 * 20_001);
+    }
+}
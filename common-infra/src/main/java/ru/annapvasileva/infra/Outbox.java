@@ -0,0 +1,24 @@
+package ru.annapvasileva.infra;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Messages to publish, written to the outbox table in the caller's transaction,
+ * so a message exists if and only if the change it describes was committed. OutboxRelay sends them.
+ */
+public class Outbox {
+    private final JdbcTemplate jdbcTemplate;
+
+    public Outbox(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Joins the current transaction; outside of one the message is committed on its own.
+    @Transactional
+    public void append(String exchange, String routingKey, byte[] payload) {
+        jdbcTemplate.update(
+                "insert into outbox (exchange, routing_key, payload) values (?, ?, ?)",
+                exchange, routingKey, payload);
+    }
+}
@@ -0,0 +1,35 @@
+package ru.annapvasileva.infra;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+
+// Enabled by the services whose database has the outbox table (see flyway-migrations).
+@Configuration
+@ConditionalOnProperty(name = "outbox.enabled", havingValue = "true")
+public class OutboxConfig {
+
+    @Bean
+    public Outbox outbox(JdbcTemplate jdbcTemplate) {
+        return new Outbox(jdbcTemplate);
+    }
+
+    @Bean
+    public OutboxRelay outboxRelay(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            RabbitTemplate rabbitTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${outbox.relay.batch-size:500}") int batchSize,
+            @Value("${outbox.relay.interval:PT0.1S}") Duration interval,
+            @Value("${outbox.relay.confirm-timeout:PT5S}") Duration confirmTimeout) {
+        return new OutboxRelay(jdbcTemplate, transactionTemplate, rabbitTemplate, meterRegistry, batchSize, interval, confirmTimeout);
+    }
+}
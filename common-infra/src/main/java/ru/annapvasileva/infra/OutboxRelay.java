@@ -0,0 +1,148 @@
+package ru.annapvasileva.infra;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the outbox in id order, in batches: a batch is sent with publisher confirms and deleted in the same
+ * transaction it was read in, so a failed send leaves it in place for the next poll (at least once delivery).
+ * An advisory lock keeps a single active relay across replicas, so batches are not sent twice concurrently.
+ * Ids are taken on insert, not on commit: a message whose transaction commits late is sent after messages with
+ * higher ids, so there is no ordering guarantee, not even per aggregate unless its writers lock it before appending.
+ */
+public class OutboxRelay implements SmartLifecycle {
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RabbitTemplate rabbitTemplate;
+    private final int batchSize;
+    private final Duration interval;
+    private final Duration confirmTimeout;
+
+    private final Counter published;
+    private final Timer batchTimer;
+    // Age of the oldest message seen by the last poll, 0 once the outbox is drained.
+    private final AtomicLong lagMillis = new AtomicLong();
+
+    private ScheduledExecutorService scheduler;
+
+    public OutboxRelay(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            RabbitTemplate rabbitTemplate,
+            MeterRegistry meterRegistry,
+            int batchSize,
+            Duration interval,
+            Duration confirmTimeout) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.rabbitTemplate = rabbitTemplate;
+        this.batchSize = batchSize;
+        this.interval = interval;
+        this.confirmTimeout = confirmTimeout;
+        this.published = Counter.builder("outbox.relay.published")
+                .description("Messages published from the outbox")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("outbox.relay.batch")
+                .description("Time to publish and delete one outbox batch")
+                .register(meterRegistry);
+        Gauge.builder("outbox.relay.lag", lagMillis, AtomicLong::get)
+                .description("Age of the oldest unpublished outbox message")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public synchronized void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "outbox-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::poll, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(confirmTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler = null;
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return scheduler != null;
+    }
+
+    // Drains full batches back to back, then waits for the next interval.
+    private void poll() {
+        try {
+            int relayed;
+            do {
+                relayed = batchTimer.record(() -> transactionTemplate.execute(status -> relayBatch()));
+            } while (relayed == batchSize);
+        } catch (RuntimeException e) {
+            log.warn("Outbox relay failed, retrying in {}", interval, e);
+        }
+    }
+
+    private int relayBatch() {
+        Boolean locked = jdbcTemplate.queryForObject("select pg_try_advisory_xact_lock(hashtext('outbox'))", Boolean.class);
+        if (!Boolean.TRUE.equals(locked)) {
+            return 0;
+        }
+
+        List<OutboxMessage> batch = jdbcTemplate.query(
+                "select id, exchange, routing_key, payload, created_at from outbox order by id limit ?",
+                (rs, rowNum) -> new OutboxMessage(
+                        rs.getLong(1), rs.getString(2), rs.getString(3), rs.getBytes(4),
+                        rs.getObject(5, OffsetDateTime.class).toInstant()),
+                batchSize);
+        if (batch.isEmpty()) {
+            lagMillis.set(0);
+            return 0;
+        }
+        lagMillis.set(Duration.between(batch.get(0).createdAt(), Instant.now()).toMillis());
+
+        rabbitTemplate.invoke(operations -> {
+            for (OutboxMessage message : batch) {
+                operations.send(message.exchange(), message.routingKey(), new Message(message.payload(), new MessageProperties()));
+            }
+            operations.waitForConfirmsOrDie(confirmTimeout.toMillis());
+            return null;
+        });
+        Long[] ids = batch.stream().map(OutboxMessage::id).toArray(Long[]::new);
+        jdbcTemplate.update(
+                "delete from outbox where id = any(?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids)));
+
+        published.increment(batch.size());
+        return batch.size();
+    }
+
+    private record OutboxMessage(long id, String exchange, String routingKey, byte[] payload, Instant createdAt) {}
+}
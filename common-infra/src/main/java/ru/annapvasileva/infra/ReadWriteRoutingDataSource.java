@@ -0,0 +1,127 @@
+package ru.annapvasileva.infra;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends read-only transactions to a replica, round robin, and everything else to the primary.
+ * A replica is only used while it is a standby streaming from the primary and its replication lag, measured every check
+ * interval, is at most maxLag; without a usable replica read-only transactions go to the primary too.
+ * Must be wrapped in a LazyConnectionDataSourceProxy, since the read-only flag is set after the transaction began.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ReadWriteRoutingDataSource.class);
+    private static final String PRIMARY = "primary";
+    // Seconds since the last replayed transaction, 0 if everything received is replayed, null if the server is not
+    // a standby (nothing keeps it in step with the primary) or is not streaming: a disconnected standby has replayed
+    // all it received but may be arbitrarily stale. The status column is only visible to superusers and members of
+    // pg_read_all_stats.
+    private static final String LAG_QUERY = """
+            select case
+                when not pg_is_in_recovery() then null
+                when not exists (select 1 from pg_stat_wal_receiver where status = 'streaming') then null
+                when pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0
+                else coalesce(extract(epoch from now() - pg_last_xact_replay_timestamp()), 0)
+            end
+            """;
+
+    private final DataSource primary;
+    private final Map<String, DataSource> replicas = new LinkedHashMap<>();
+    private final Duration maxLag;
+    private final ScheduledExecutorService checker;
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile List<String> usableReplicas = List.of();
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicas, Duration maxLag, Duration checkInterval) {
+        this.primary = primary;
+        this.maxLag = maxLag;
+        for (int i = 0; i < replicas.size(); i++) {
+            this.replicas.put("replica-" + i, replicas.get(i));
+        }
+
+        Map<Object, Object> targets = new HashMap<>(this.replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+
+        this.checker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (!this.replicas.isEmpty()) {
+            checker.scheduleWithFixedDelay(this::checkReplicas, 0, checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        List<String> usable = usableReplicas;
+        if (usable.isEmpty()) {
+            return PRIMARY;
+        }
+        return usable.get(Math.floorMod(next.getAndIncrement(), usable.size()));
+    }
+
+    @Override
+    public void close() throws Exception {
+        checker.shutdownNow();
+        for (DataSource replica : replicas.values()) {
+            closeIfPossible(replica);
+        }
+        closeIfPossible(primary);
+    }
+
+    private void checkReplicas() {
+        List<String> usable = new ArrayList<>();
+        for (Map.Entry<String, DataSource> replica : replicas.entrySet()) {
+            if (isUsable(replica.getKey(), replica.getValue())) {
+                usable.add(replica.getKey());
+            }
+        }
+        if (!usable.equals(usableReplicas)) {
+            log.info("Read-only transactions now use {}", usable.isEmpty() ? List.of(PRIMARY) : usable);
+        }
+        usableReplicas = List.copyOf(usable);
+    }
+
+    private boolean isUsable(String name, DataSource replica) {
+        try (Connection connection = replica.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(LAG_QUERY)) {
+            rs.next();
+            double lagSeconds = rs.getDouble(1);
+            return !rs.wasNull() && lagSeconds * 1000 <= maxLag.toMillis();
+        } catch (SQLException e) {
+            log.debug("Cannot check {}", name, e);
+            return false;
+        }
+    }
+
+    private static void closeIfPossible(DataSource dataSource) throws Exception {
+        if (dataSource instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+}
@@ -0,0 +1,6 @@
+-- Owners whose users are being deleted; no users are added to them any more.
+-- Rows are kept after the deletion completes: owner ids are never reused, and the row still turns away
+-- a user write that checked the owner before the deletion reached it.
+CREATE TABLE IF NOT EXISTS deleting_owners (
+    owner_id UUID PRIMARY KEY
+);
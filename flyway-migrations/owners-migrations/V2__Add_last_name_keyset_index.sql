@@ -0,0 +1,2 @@
+-- Keyset listing by last name (OwnerService.scrollOwners)
+CREATE INDEX IF NOT EXISTS idx_owners_last_name_id ON owners (last_name, id);
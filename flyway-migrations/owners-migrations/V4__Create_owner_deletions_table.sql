@@ -0,0 +1,9 @@
+-- State of the owner deletion saga, kept after the owner row is gone
+CREATE TABLE IF NOT EXISTS owner_deletions (
+    owner_id UUID PRIMARY KEY,
+    status VARCHAR(255) NOT NULL,
+    cats_deleted BOOLEAN NOT NULL,
+    users_deleted BOOLEAN NOT NULL,
+    requested_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    completed_at TIMESTAMP WITH TIME ZONE
+);
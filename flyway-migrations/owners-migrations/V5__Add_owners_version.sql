@@ -0,0 +1,2 @@
+-- Optimistic locking (OwnerEntity.version): a write based on a stale second-level cache copy fails instead of applying
+ALTER TABLE owners ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,2 @@
+-- Keyset listing by name (CatService.scrollCats)
+CREATE INDEX IF NOT EXISTS idx_cats_name_id ON cats (name, id);
@@ -0,0 +1,16 @@
+-- Common friend counts, adjusted together with cat_friends (SuggestionRepository)
+CREATE TABLE IF NOT EXISTS cat_suggestions (
+    cat_id UUID NOT NULL,
+    candidate_id UUID NOT NULL,
+    common_count INTEGER NOT NULL,
+    PRIMARY KEY (cat_id, candidate_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_cat_suggestions_candidate ON cat_suggestions (candidate_id);
+
+-- Counts for the friendships that already exist; runs before any service writes to cat_friends
+INSERT INTO cat_suggestions (cat_id, candidate_id, common_count)
+SELECT f1.second_cat_id, f2.second_cat_id, count(*)
+FROM cat_friends f1 JOIN cat_friends f2 ON f1.first_cat_id = f2.first_cat_id AND f1.second_cat_id <> f2.second_cat_id
+GROUP BY f1.second_cat_id, f2.second_cat_id
+ON CONFLICT (cat_id, candidate_id) DO NOTHING;
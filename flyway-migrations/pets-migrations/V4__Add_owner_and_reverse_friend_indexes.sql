@@ -0,0 +1,5 @@
+-- Listing and deleting the cats of an owner
+CREATE INDEX IF NOT EXISTS idx_cats_owner_id_id ON cats (owner_id, id);
+
+-- The primary key only covers lookups by first_cat_id
+CREATE INDEX IF NOT EXISTS idx_cat_friends_second_cat_id ON cat_friends (second_cat_id);
@@ -0,0 +1,7 @@
+-- Filters of CatService.searchCats
+CREATE INDEX IF NOT EXISTS idx_cats_breed_color_birth ON cats (breed, color, date_of_birth);
+CREATE INDEX IF NOT EXISTS idx_cats_color_birth ON cats (color, date_of_birth);
+CREATE INDEX IF NOT EXISTS idx_cats_birth_date ON cats (date_of_birth);
+
+-- LIKE 'prefix%' can only use a btree with pattern operators unless the database collation is C
+CREATE INDEX IF NOT EXISTS idx_cats_name_pattern ON cats (name varchar_pattern_ops);
@@ -0,0 +1,16 @@
+-- Cats per color, breed and owner, adjusted together with cats (CatCounterRepository)
+CREATE TABLE IF NOT EXISTS cat_counters (
+    dimension VARCHAR(255) NOT NULL,
+    dimension_value VARCHAR(255) NOT NULL,
+    cat_count BIGINT NOT NULL,
+    PRIMARY KEY (dimension, dimension_value)
+);
+
+-- Counts for the cats that already exist; runs before any service writes to cats
+INSERT INTO cat_counters (dimension, dimension_value, cat_count)
+SELECT 'color', coalesce(color, ''), count(*) FROM cats GROUP BY color
+UNION ALL
+SELECT 'breed', breed, count(*) FROM cats GROUP BY breed
+UNION ALL
+SELECT 'owner', owner_id::text, count(*) FROM cats GROUP BY owner_id
+ON CONFLICT (dimension, dimension_value) DO NOTHING;
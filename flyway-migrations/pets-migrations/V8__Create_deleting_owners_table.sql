@@ -0,0 +1,4 @@
+-- Owners whose cats are being deleted; no cats are added to them any more
+CREATE TABLE IF NOT EXISTS deleting_owners (
+    owner_id UUID PRIMARY KEY
+);
@@ -0,0 +1,2 @@
+-- Optimistic locking (CatEntity.version): a write based on a stale second-level cache copy fails instead of applying
+ALTER TABLE cats ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,57 @@
+package ru.annapvasileva.configurations;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.annapvasileva.cats.CatDto;
+import ru.annapvasileva.owners.OwnerDto;
+
+import java.time.Duration;
+import java.util.UUID;
+
+// Caffeine uses W-TinyLFU admission, so one-off reads do not push out frequently read entries.
+// Weights approximate the retained size in bytes.
+@Configuration
+public class CacheConfig {
+
+    @Bean
+    public Cache<UUID, CatDto> catCache(
+            @Value("${cache.cats.max-weight:67108864}") long maxWeight,
+            @Value("${cache.cats.ttl:PT5M}") Duration ttl,
+            MeterRegistry meterRegistry) {
+        Cache<UUID, CatDto> cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((UUID id, CatDto cat) -> 200
+                        + 2 * (length(cat.name) + length(cat.breed))
+                        + 40 * (cat.friends == null ? 0 : cat.friends.size()))
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "cats");
+        return cache;
+    }
+
+    @Bean
+    public Cache<UUID, OwnerDto> ownerCache(
+            @Value("${cache.owners.max-weight:16777216}") long maxWeight,
+            @Value("${cache.owners.ttl:PT5M}") Duration ttl,
+            MeterRegistry meterRegistry) {
+        Cache<UUID, OwnerDto> cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((UUID id, OwnerDto owner) -> 160
+                        + 2 * (length(owner.firstName) + length(owner.lastName)))
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "owners");
+        return cache;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
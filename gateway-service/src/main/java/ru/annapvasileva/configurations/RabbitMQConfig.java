@@ -1,11 +1,16 @@
 package ru.annapvasileva.configurations;
 
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.AsyncRabbitTemplate;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 @Configuration
 public class RabbitMQConfig {
@@ -14,19 +19,33 @@ public class RabbitMQConfig {
     public static final String OWNER_EXCHANGE = "owner.exchange";
 
     public static final String CAT_CREATE_QUEUE = "cat.create.queue";
+    public static final String CAT_CREATEBATCH_QUEUE = "cat.createBatch.queue";
     public static final String CAT_GET_QUEUE = "cat.get.queue";
+    public static final String CAT_GETBATCH_QUEUE = "cat.getBatch.queue";
     public static final String CAT_GETALL_QUEUE = "cat.getAll.queue";
+    public static final String CAT_GETBYOWNER_QUEUE = "cat.getByOwner.queue";
+    public static final String CAT_SCROLL_QUEUE = "cat.scroll.queue";
+    public static final String CAT_SEARCH_QUEUE = "cat.search.queue";
+    public static final String CAT_STATS_QUEUE = "cat.stats.queue";
     public static final String CAT_MAKEFRIENDS_QUEUE = "cat.makeFriends.queue";
     public static final String CAT_DELETEFRIENDSHIP_QUEUE = "cat.deleteFriendship.queue";
+    public static final String CAT_MUTUALFRIENDS_QUEUE = "cat.mutualFriends.queue";
+    public static final String CAT_FRIENDSOFFRIENDS_QUEUE = "cat.friendsOfFriends.queue";
+    public static final String CAT_SEPARATION_QUEUE = "cat.separation.queue";
+    public static final String CAT_SUGGESTIONS_QUEUE = "cat.suggestions.queue";
     public static final String CAT_DELETE_QUEUE = "cat.delete.queue";
     public static final String CAT_UPDATE_QUEUE = "cat.update.queue";
     public static final String OWNER_CREATE_QUEUE = "owner.create.queue";
     public static final String OWNER_GET_QUEUE = "owner.get.queue";
+    public static final String OWNER_GETBATCH_QUEUE = "owner.getBatch.queue";
     public static final String OWNER_GETALL_QUEUE = "owner.getAll.queue";
+    public static final String OWNER_SCROLL_QUEUE = "owner.scroll.queue";
     public static final String OWNER_CHANGEFORPET_QUEUE = "owner.changeForPet.queue";
     public static final String OWNER_DELETEPET_QUEUE = "owner.deletePet.queue";
     public static final String OWNER_DELETE_QUEUE = "owner.delete.queue";
+    public static final String OWNER_GETDELETION_QUEUE = "owner.getDeletion.queue";
     public static final String OWNER_UPDATE_QUEUE = "owner.update.queue";
+    public static final String USER_OWNERDELETION_QUEUE = "user.ownerDeletion.queue";
 
     private Queue queueWithDlq(String name, String dlqName) {
         Map<String, Object> args = new HashMap<>();
@@ -35,6 +54,26 @@ public class RabbitMQConfig {
         return new Queue(name, true, false, false, args);
     }
 
+    // Replies come back through direct reply-to and complete the pending futures by correlation id.
+    @Bean
+    public AsyncRabbitTemplate asyncRabbitTemplate(
+            RabbitTemplate rabbitTemplate,
+            @Value("${spring.rabbitmq.template.reply-timeout:5000}") long replyTimeout) {
+        AsyncRabbitTemplate asyncRabbitTemplate = new AsyncRabbitTemplate(rabbitTemplate);
+        asyncRabbitTemplate.setReceiveTimeout(replyTimeout);
+        return asyncRabbitTemplate;
+    }
+
+    // Fires the batch windows of the RequestBatchers; flushing only publishes a message, so one thread is enough.
+    @Bean(destroyMethod = "shutdown")
+    public ScheduledExecutorService rpcBatchScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rpc-batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
     @Bean
     public TopicExchange catExchange() {
         return new TopicExchange(CAT_EXCHANGE);
@@ -50,16 +89,41 @@ public class RabbitMQConfig {
         return queueWithDlq(CAT_CREATE_QUEUE, "cat.dlq");
     }
 
+    @Bean
+    public Queue catCreateBatchQueue() {
+        return queueWithDlq(CAT_CREATEBATCH_QUEUE, "cat.dlq");
+    }
+
     @Bean
     public Queue catGetQueue() {
         return queueWithDlq(CAT_GET_QUEUE, "cat.dlq");
     }
 
+    @Bean
+    public Queue catGetBatchQueue() {
+        return queueWithDlq(CAT_GETBATCH_QUEUE, "cat.dlq");
+    }
+
     @Bean
     public Queue catGetAllQueue() {
         return queueWithDlq(CAT_GETALL_QUEUE, "cat.dlq");
     }
 
+    @Bean
+    public Queue catScrollQueue() {
+        return queueWithDlq(CAT_SCROLL_QUEUE, "cat.dlq");
+    }
+
+    @Bean
+    public Queue catSearchQueue() {
+        return queueWithDlq(CAT_SEARCH_QUEUE, "cat.dlq");
+    }
+
+    @Bean
+    public Queue catStatsQueue() {
+        return queueWithDlq(CAT_STATS_QUEUE, "cat.dlq");
+    }
+
     @Bean
     public Queue catMakeFriendsQueue() {
         return queueWithDlq(CAT_MAKEFRIENDS_QUEUE, "cat.dlq");
@@ -71,262 +135,259 @@ public class RabbitMQConfig {
     }
 
     @Bean
-    public Queue catDeleteQueue() {
-        return queueWithDlq(CAT_DELETE_QUEUE, "cat.dlq");
+    public Queue catMutualFriendsQueue() {
+        return queueWithDlq(CAT_MUTUALFRIENDS_QUEUE, "cat.dlq");
     }
 
     @Bean
-    public Queue catUpdateQueue() {
-        return queueWithDlq(CAT_UPDATE_QUEUE, "cat.dlq");
+    public Queue catFriendsOfFriendsQueue() {
+        return queueWithDlq(CAT_FRIENDSOFFRIENDS_QUEUE, "cat.dlq");
     }
 
     @Bean
-    public Queue ownerCreateQueue() {
-        return queueWithDlq(OWNER_CREATE_QUEUE, "owner.dlq");
+    public Queue catSeparationQueue() {
+        return queueWithDlq(CAT_SEPARATION_QUEUE, "cat.dlq");
     }
 
     @Bean
-    public Queue ownerGetQueue() {
-        return queueWithDlq(OWNER_GET_QUEUE, "owner.dlq");
+    public Queue catGetByOwnerQueue() {
+        return queueWithDlq(CAT_GETBYOWNER_QUEUE, "cat.dlq");
     }
 
     @Bean
-    public Queue ownerGetAllQueue() {
-        return queueWithDlq(OWNER_GETALL_QUEUE, "owner.dlq");
+    public Queue catSuggestionsQueue() {
+        return queueWithDlq(CAT_SUGGESTIONS_QUEUE, "cat.dlq");
     }
 
     @Bean
-    public Queue ownerChangeForPetQueue() {
-        return queueWithDlq(OWNER_CHANGEFORPET_QUEUE, "owner.dlq");
+    public Queue catDeleteQueue() {
+        return queueWithDlq(CAT_DELETE_QUEUE, "cat.dlq");
     }
 
     @Bean
-    public Queue ownerDeletePetQueue() {
-        return queueWithDlq(OWNER_DELETEPET_QUEUE, "owner.dlq");
+    public Queue catUpdateQueue() {
+        return queueWithDlq(CAT_UPDATE_QUEUE, "cat.dlq");
     }
 
     @Bean
-    public Queue ownerDeleteQueue() {
-        return queueWithDlq(OWNER_DELETE_QUEUE, "owner.dlq");
+    public Queue ownerCreateQueue() {
+        return queueWithDlq(OWNER_CREATE_QUEUE, "owner.dlq");
     }
 
     @Bean
-    public Queue ownerUpdateQueue() {
-        return queueWithDlq(OWNER_UPDATE_QUEUE, "owner.dlq");
-    }
-
-    private Binding binding(Queue queue, TopicExchange exchange, String routingKey) {
-        return BindingBuilder.bind(queue).to(exchange).with(routingKey);
+    public Queue ownerGetQueue() {
+        return queueWithDlq(OWNER_GET_QUEUE, "owner.dlq");
     }
 
     @Bean
-    public Binding catCreateBinding() {
-        return binding(catCreateQueue(), catExchange(), "cat.create");
+    public Queue ownerGetBatchQueue() {
+        return queueWithDlq(OWNER_GETBATCH_QUEUE, "owner.dlq");
     }
 
     @Bean
-    public Binding catGetBinding() {
-        return binding(catGetQueue(), catExchange(), "cat.get");
+    public Queue ownerGetAllQueue() {
+        return queueWithDlq(OWNER_GETALL_QUEUE, "owner.dlq");
     }
 
     @Bean
-    public Binding catGetAllBinding() {
-        return binding(catGetAllQueue(), catExchange(), "cat.getAll");
+    public Queue ownerScrollQueue() {
+        return queueWithDlq(OWNER_SCROLL_QUEUE, "owner.dlq");
     }
 
     @Bean
-    public Binding catMakeFriendsBinding() {
-        return binding(catMakeFriendsQueue(), catExchange(), "cat.makeFriends");
+    public Queue ownerChangeForPetQueue() {
+        return queueWithDlq(OWNER_CHANGEFORPET_QUEUE, "owner.dlq");
     }
 
     @Bean
-    public Binding catDeleteFriendshipBinding() {
-        return binding(catDeleteFriendshipQueue(), catExchange(), "cat.deleteFriendship");
+    public Queue ownerDeletePetQueue() {
+        return queueWithDlq(OWNER_DELETEPET_QUEUE, "owner.dlq");
     }
 
     @Bean
-    public Binding catDeleteBinding() {
-        return binding(catDeleteQueue(), catExchange(), "cat.delete");
+    public Queue ownerDeleteQueue() {
+        return queueWithDlq(OWNER_DELETE_QUEUE, "owner.dlq");
     }
 
     @Bean
-    public Binding catUpdateBinding() {
-        return binding(catUpdateQueue(), catExchange(), "cat.update");
+    public Queue ownerGetDeletionQueue() {
+        return queueWithDlq(OWNER_GETDELETION_QUEUE, "owner.dlq");
     }
 
     @Bean
-    public Binding ownerCreateBinding() {
-        return binding(ownerCreateQueue(), ownerExchange(), "owner.create");
+    public Queue ownerUpdateQueue() {
+        return queueWithDlq(OWNER_UPDATE_QUEUE, "owner.dlq");
     }
 
+    // Shared by all gateway instances, so the users of a deleted owner are removed once.
     @Bean
-    public Binding ownerGetBinding() {
-        return binding(ownerGetQueue(), ownerExchange(), "owner.get");
+    public Queue userOwnerDeletionQueue() {
+        return queueWithDlq(USER_OWNERDELETION_QUEUE, "owner.dlq");
     }
 
-    @Bean
-    public Binding ownerGetAllBinding() {
-        return binding(ownerGetAllQueue(), ownerExchange(), "owner.getAll");
+    private Binding binding(Queue queue, TopicExchange exchange, String routingKey) {
+        return BindingBuilder.bind(queue).to(exchange).with(routingKey);
     }
 
+    // Every gateway instance gets its own exclusive copy of the cat events.
     @Bean
-    public Binding ownerChangeForPetBinding() {
-        return binding(ownerChangeForPetQueue(), ownerExchange(), "owner.changeForPet");
+    public Queue catEventQueue() {
+        return new AnonymousQueue();
     }
 
     @Bean
-    public Binding ownerDeletePetBinding() {
-        return binding(ownerDeletePetQueue(), ownerExchange(), "owner.deletePet");
+    public Binding catEventBinding() {
+        return binding(catEventQueue(), catExchange(), "cat.event.*");
     }
 
     @Bean
-    public Binding ownerDeleteBinding() {
-        return binding(ownerDeleteQueue(), ownerExchange(), "owner.delete");
+    public Queue ownerEventQueue() {
+        return new AnonymousQueue();
     }
 
     @Bean
-    public Binding ownerUpdateBinding() {
-        return binding(ownerUpdateQueue(), ownerExchange(), "owner.update");
+    public Binding ownerEventBinding() {
+        return binding(ownerEventQueue(), ownerExchange(), "owner.event.*");
     }
 
     @Bean
-    public Queue catCreateReplyQueue() {
-        return queueWithDlq("cat.create.reply.queue", "cat.dlq");
+    public Binding catCreateBinding() {
+        return binding(catCreateQueue(), catExchange(), "cat.create");
     }
 
     @Bean
-    public Queue catGetReplyQueue() {
-        return queueWithDlq("cat.get.reply.queue", "cat.dlq");
+    public Binding catCreateBatchBinding() {
+        return binding(catCreateBatchQueue(), catExchange(), "cat.createBatch");
     }
 
     @Bean
-    public Queue catGetAllReplyQueue() {
-        return queueWithDlq("cat.getAll.reply.queue", "cat.dlq");
+    public Binding catGetBinding() {
+        return binding(catGetQueue(), catExchange(), "cat.get");
     }
 
     @Bean
-    public Queue catMakeFriendsReplyQueue() {
-        return queueWithDlq("cat.makeFriends.reply.queue", "cat.dlq");
+    public Binding catGetBatchBinding() {
+        return binding(catGetBatchQueue(), catExchange(), "cat.getBatch");
     }
 
     @Bean
-    public Queue catDeleteFriendshipReplyQueue() {
-        return queueWithDlq("cat.deleteFriendship.reply.queue", "cat.dlq");
+    public Binding catGetAllBinding() {
+        return binding(catGetAllQueue(), catExchange(), "cat.getAll");
     }
 
     @Bean
-    public Queue catDeleteReplyQueue() {
-        return queueWithDlq("cat.delete.reply.queue", "cat.dlq");
+    public Binding catScrollBinding() {
+        return binding(catScrollQueue(), catExchange(), "cat.scroll");
     }
 
     @Bean
-    public Queue catUpdateReplyQueue() {
-        return queueWithDlq("cat.update.reply.queue", "cat.dlq");
+    public Binding catSearchBinding() {
+        return binding(catSearchQueue(), catExchange(), "cat.search");
     }
 
     @Bean
-    public Queue ownerCreateReplyQueue() {
-        return queueWithDlq("owner.create.reply.queue", "owner.dlq");
+    public Binding catStatsBinding() {
+        return binding(catStatsQueue(), catExchange(), "cat.stats");
     }
 
     @Bean
-    public Queue ownerGetReplyQueue() {
-        return queueWithDlq("owner.get.reply.queue", "owner.dlq");
+    public Binding catMakeFriendsBinding() {
+        return binding(catMakeFriendsQueue(), catExchange(), "cat.makeFriends");
     }
 
     @Bean
-    public Queue ownerGetAllReplyQueue() {
-        return queueWithDlq("owner.getAll.reply.queue", "owner.dlq");
+    public Binding catDeleteFriendshipBinding() {
+        return binding(catDeleteFriendshipQueue(), catExchange(), "cat.deleteFriendship");
     }
 
     @Bean
-    public Queue ownerChangeForPetReplyQueue() {
-        return queueWithDlq("owner.changeForPet.reply.queue", "owner.dlq");
+    public Binding catMutualFriendsBinding() {
+        return binding(catMutualFriendsQueue(), catExchange(), "cat.mutualFriends");
     }
 
     @Bean
-    public Queue ownerDeletePetReplyQueue() {
-        return queueWithDlq("owner.deletePet.reply.queue", "owner.dlq");
+    public Binding catFriendsOfFriendsBinding() {
+        return binding(catFriendsOfFriendsQueue(), catExchange(), "cat.friendsOfFriends");
     }
 
     @Bean
-    public Queue ownerDeleteReplyQueue() {
-        return queueWithDlq("owner.delete.reply.queue", "owner.dlq");
+    public Binding catSeparationBinding() {
+        return binding(catSeparationQueue(), catExchange(), "cat.separation");
     }
 
     @Bean
-    public Queue ownerUpdateReplyQueue() {
-        return queueWithDlq("owner.update.reply.queue", "owner.dlq");
+    public Binding catGetByOwnerBinding() {
+        return binding(catGetByOwnerQueue(), catExchange(), "cat.getByOwner");
     }
 
     @Bean
-    public Binding catCreateReplyBinding() {
-        return binding(catCreateReplyQueue(), catExchange(), "cat.create.reply");
+    public Binding catSuggestionsBinding() {
+        return binding(catSuggestionsQueue(), catExchange(), "cat.suggestions");
     }
 
     @Bean
-    public Binding catGetReplyBinding() {
-        return binding(catGetReplyQueue(), catExchange(), "cat.get.reply");
+    public Binding catDeleteBinding() {
+        return binding(catDeleteQueue(), catExchange(), "cat.delete");
     }
 
     @Bean
-    public Binding catGetAllReplyBinding() {
-        return binding(catGetAllReplyQueue(), catExchange(), "cat.getAll.reply");
+    public Binding catUpdateBinding() {
+        return binding(catUpdateQueue(), catExchange(), "cat.update");
     }
 
     @Bean
-    public Binding catMakeFriendsReplyBinding() {
-        return binding(catMakeFriendsReplyQueue(), catExchange(), "cat.makeFriends.reply");
+    public Binding ownerCreateBinding() {
+        return binding(ownerCreateQueue(), ownerExchange(), "owner.create");
     }
 
     @Bean
-    public Binding catDeleteFriendshipReplyBinding() {
-        return binding(catDeleteFriendshipReplyQueue(), catExchange(), "cat.deleteFriendship.reply");
+    public Binding ownerGetBinding() {
+        return binding(ownerGetQueue(), ownerExchange(), "owner.get");
     }
 
     @Bean
-    public Binding catDeleteReplyBinding() {
-        return binding(catDeleteReplyQueue(), catExchange(), "cat.delete.reply");
+    public Binding ownerGetBatchBinding() {
+        return binding(ownerGetBatchQueue(), ownerExchange(), "owner.getBatch");
     }
 
     @Bean
-    public Binding catUpdateReplyBinding() {
-        return binding(catUpdateReplyQueue(), catExchange(), "cat.update.reply");
+    public Binding ownerGetAllBinding() {
+        return binding(ownerGetAllQueue(), ownerExchange(), "owner.getAll");
     }
 
     @Bean
-    public Binding ownerCreateReplyBinding() {
-        return binding(ownerCreateReplyQueue(), ownerExchange(), "owner.create.reply");
+    public Binding ownerScrollBinding() {
+        return binding(ownerScrollQueue(), ownerExchange(), "owner.scroll");
     }
 
     @Bean
-    public Binding ownerGetReplyBinding() {
-        return binding(ownerGetReplyQueue(), ownerExchange(), "owner.get.reply");
+    public Binding ownerChangeForPetBinding() {
+        return binding(ownerChangeForPetQueue(), ownerExchange(), "owner.changeForPet");
     }
 
     @Bean
-    public Binding ownerGetAllReplyBinding() {
-        return binding(ownerGetAllReplyQueue(), ownerExchange(), "owner.getAll.reply");
+    public Binding ownerDeletePetBinding() {
+        return binding(ownerDeletePetQueue(), ownerExchange(), "owner.deletePet");
     }
 
     @Bean
-    public Binding ownerChangeForPetReplyBinding() {
-        return binding(ownerChangeForPetReplyQueue(), ownerExchange(), "owner.changeForPet.reply");
+    public Binding ownerDeleteBinding() {
+        return binding(ownerDeleteQueue(), ownerExchange(), "owner.delete");
     }
 
     @Bean
-    public Binding ownerDeletePetReplyBinding() {
-        return binding(ownerDeletePetReplyQueue(), ownerExchange(), "owner.deletePet.reply");
+    public Binding ownerGetDeletionBinding() {
+        return binding(ownerGetDeletionQueue(), ownerExchange(), "owner.getDeletion");
     }
 
     @Bean
-    public Binding ownerDeleteReplyBinding() {
-        return binding(ownerDeleteReplyQueue(), ownerExchange(), "owner.delete.reply");
+    public Binding ownerUpdateBinding() {
+        return binding(ownerUpdateQueue(), ownerExchange(), "owner.update");
     }
 
     @Bean
-    public Binding ownerUpdateReplyBinding() {
-        return binding(ownerUpdateReplyQueue(), ownerExchange(), "owner.update.reply");
+    public Binding userOwnerDeletionBinding() {
+        return binding(userOwnerDeletionQueue(), ownerExchange(), "owner.event.deletion_requested");
     }
 
     @Bean
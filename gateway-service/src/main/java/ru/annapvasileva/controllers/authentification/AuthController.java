@@ -1,13 +1,11 @@
 package ru.annapvasileva.controllers.authentification;
 
-import jakarta.servlet.http.HttpServletRequest;
-import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.web.authentication.logout.SecurityContextLogoutHandler;
+import ru.annapvasileva.services.users.CustomUserDetails;
+import ru.annapvasileva.services.users.TokenService;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -18,26 +16,21 @@ import org.springframework.web.bind.annotation.RestController;
 public class AuthController {
 
     private final AuthenticationManager authManager;
+    private final TokenService tokenService;
 
-    public AuthController(AuthenticationManager authManager) {
+    public AuthController(AuthenticationManager authManager, TokenService tokenService) {
         this.authManager = authManager;
+        this.tokenService = tokenService;
     }
 
+    // The password is checked with BCrypt only here; later requests present the issued bearer token.
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody LoginRequest request) {
+    public ResponseEntity<LoginResponse> login(@RequestBody LoginRequest request) {
         UsernamePasswordAuthenticationToken token =
                 new UsernamePasswordAuthenticationToken(request.getUsername(), request.getPassword());
         Authentication auth = authManager.authenticate(token);
-        SecurityContextHolder.getContext().setAuthentication(auth);
 
-        return ResponseEntity.ok().build();
-    }
-
-    @PostMapping("/logout")
-    public ResponseEntity<?> logout(HttpServletRequest request, HttpServletResponse response) {
-        SecurityContextHolder.clearContext();
-        new SecurityContextLogoutHandler().logout(request, response, null);
-
-        return ResponseEntity.ok().build();
+        String accessToken = tokenService.issue((CustomUserDetails) auth.getPrincipal());
+        return ResponseEntity.ok(new LoginResponse(accessToken, "Bearer", tokenService.getTtl().toSeconds()));
     }
 }
@@ -0,0 +1,12 @@
+package ru.annapvasileva.controllers.authentification;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class LoginResponse {
+    private String token;
+    private String tokenType;
+    private long expiresIn;
+}
@@ -1,37 +1,57 @@
 package ru.annapvasileva.controllers.cats;
 
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolationException;
 import jakarta.validation.Valid;
-import org.springframework.amqp.core.Message;
-import org.springframework.amqp.core.MessageProperties;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import ru.annapvasileva.cats.CatDto;
+import ru.annapvasileva.cats.CatSearchRequest;
+import ru.annapvasileva.cats.CatStatsDto;
+import ru.annapvasileva.cats.CatSuggestionDto;
+import ru.annapvasileva.cats.Colors;
 import ru.annapvasileva.cats.CreateCatRequest;
-
+import ru.annapvasileva.services.cats.CatQueryService;
+import ru.annapvasileva.services.rpc.RpcClient;
+import ru.annapvasileva.util.CursorPage;
+import ru.annapvasileva.util.OperationFailedException;
+import ru.annapvasileva.util.ScrollCursor;
+import ru.annapvasileva.util.ScrollRequest;
+
+import java.time.LocalDate;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
+// @Validated so that constraints on container elements, such as the requests of /batch, are checked as well.
 @RestController
 @RequestMapping("/api/cats")
 @EnableMethodSecurity(prePostEnabled = true)
+@Validated
 public class CatController {
 
-    private final RabbitTemplate rabbitTemplate;
-    private final ObjectMapper objectMapper;
+    private static final String CAT_EXCHANGE = "cat.exchange";
+    private static final int MAX_SCROLL_SIZE = 1000;
+    // Upper bound for the ids/requests accepted by one bulk call.
+    private static final int MAX_BULK_SIZE = 500;
+    // The pet service keeps no more suggestions than this per cat (cats.suggestions.top-k).
+    private static final int MAX_SUGGESTIONS = 20;
+
+    private final RpcClient rpcClient;
+    private final CatQueryService catQueryService;
 
-    public CatController(RabbitTemplate rabbitTemplate, ObjectMapper objectMapper) {
-        this.rabbitTemplate = rabbitTemplate;
-        this.objectMapper = objectMapper;
+    public CatController(RpcClient rpcClient, CatQueryService catQueryService) {
+        this.rpcClient = rpcClient;
+        this.catQueryService = catQueryService;
     }
 
     // @RequestBody         The request body is being read and deserialized into an Object through an HttpMessageReader.
@@ -39,55 +59,45 @@ public class CatController {
     @PostMapping
     @PreAuthorize("hasRole('ADMIN') or (hasRole('USER') and #request.ownerId == authentication.principal.getOwnerId())")
     public CompletableFuture<ResponseEntity<CatDto>> addCat(@Valid @RequestBody CreateCatRequest request) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                String correlationId = UUID.randomUUID().toString();
-
-                MessageProperties properties = new MessageProperties();
-                properties.setCorrelationId(correlationId);
-                properties.setReplyTo("cat.create.reply.queue");
+        return rpcClient.sendAndReceive(CAT_EXCHANGE, "cat.create", request, CatDto.class)
+                .thenApply(response -> response
+                        .map(ResponseEntity::ok)
+                        .orElse(ResponseEntity.badRequest().build()));
+    }
 
-                Message message = new Message(objectMapper.writeValueAsBytes(request), properties);
+    @PostMapping("/batch")
+    @PreAuthorize("hasRole('ADMIN') or (hasRole('USER') and #requests.?[ownerId != #root.authentication.principal.getOwnerId()].isEmpty())")
+    public CompletableFuture<ResponseEntity<List<CatDto>>> addCats(@RequestBody List<@Valid CreateCatRequest> requests) {
+        if (requests.isEmpty() || requests.size() > MAX_BULK_SIZE) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+
+        // The pet service answers with an empty list when any of the owners does not exist; nothing is created then.
+        return rpcClient.sendAndReceive(CAT_EXCHANGE, "cat.createBatch", requests, new TypeReference<List<CatDto>>() {})
+                .thenApply(response -> response
+                        .filter(cats -> !cats.isEmpty())
+                        .map(ResponseEntity::ok)
+                        .orElse(ResponseEntity.badRequest().build()));
+    }
 
-                Message response = rabbitTemplate.sendAndReceive("cat.exchange", "cat.create", message);
+    @GetMapping(params = "ids")
+    @PreAuthorize("isAuthenticated()")
+    public CompletableFuture<ResponseEntity<List<CatDto>>> getCats(@RequestParam List<UUID> ids) {
+        if (ids.size() > MAX_BULK_SIZE) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
 
-                if (response != null) {
-                    CatDto catDto = objectMapper.readValue(response.getBody(), CatDto.class);
-                    return ResponseEntity.ok(catDto);
-                } else {
-                    return ResponseEntity.badRequest().build();
-                }
-            } catch (Exception e) {
-                throw new RuntimeException("Error processing request", e);
-            }
-        });
+        return catQueryService.getCats(ids)
+                .thenApply(ResponseEntity::ok);
     }
 
     @GetMapping("/{id}")
     @PreAuthorize("isAuthenticated()")
     public CompletableFuture<ResponseEntity<CatDto>> getCat(@PathVariable UUID id) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                String correlationId = UUID.randomUUID().toString();
-
-                MessageProperties properties = new MessageProperties();
-                properties.setCorrelationId(correlationId);
-                properties.setReplyTo("cat.get.reply.queue");
-
-                Message message = new Message(id.toString().getBytes(), properties);
-
-                Message response = rabbitTemplate.sendAndReceive("cat.exchange", "cat.get", message);
-
-                if (response != null) {
-                    CatDto catDto = objectMapper.readValue(response.getBody(), CatDto.class);
-                    return ResponseEntity.ok(catDto);
-                } else {
-                    return ResponseEntity.notFound().build();
-                }
-            } catch (Exception e) {
-                throw new RuntimeException("Error processing request", e);
-            }
-        });
+        return catQueryService.getCat(id)
+                .thenApply(response -> response
+                        .map(ResponseEntity::ok)
+                        .orElse(ResponseEntity.notFound().build()));
     }
 
     @GetMapping
@@ -98,151 +108,207 @@ public class CatController {
             @RequestParam(defaultValue = "name") String sortBy,
             @RequestParam(defaultValue = "asc") String sortDir) {
 
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                String correlationId = UUID.randomUUID().toString();
+        Map<String, Object> requestParams = new HashMap<>();
+        requestParams.put("page", page);
+        requestParams.put("size", size);
+        requestParams.put("sortBy", sortBy);
+        requestParams.put("sortDir", sortDir);
 
-                Map<String, Object> requestParams = new HashMap<>();
-                requestParams.put("page", page);
-                requestParams.put("size", size);
-                requestParams.put("sortBy", sortBy);
-                requestParams.put("sortDir", sortDir);
+        return rpcClient.sendAndReceive(CAT_EXCHANGE, "cat.getAll", requestParams, new TypeReference<PageImpl<CatDto>>() {})
+                .thenApply(response -> response
+                        .<ResponseEntity<Page<CatDto>>>map(ResponseEntity::ok)
+                        .orElse(ResponseEntity.status(HttpStatus.REQUEST_TIMEOUT).build()));
+    }
 
-                MessageProperties properties = new MessageProperties();
-                properties.setCorrelationId(correlationId);
-                properties.setReplyTo("cat.getAll.reply.queue");
+    // Filtering happens in the pet service's query, so only matching cats are returned.
+    @GetMapping("/search")
+    @PreAuthorize("isAuthenticated()")
+    public CompletableFuture<ResponseEntity<Page<CatDto>>> searchCats(
+            @RequestParam(required = false) String namePrefix,
+            @RequestParam(required = false) String breed,
+            @RequestParam(required = false) Colors color,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate bornFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate bornTo,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "name") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDir) {
+        if (page < 0 || size < 1 || size > MAX_SCROLL_SIZE) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
 
-                Message message = new Message(objectMapper.writeValueAsBytes(requestParams), properties);
+        CatSearchRequest request = new CatSearchRequest(namePrefix, breed, color, bornFrom, bornTo, page, size, sortBy, sortDir);
 
-                Message response = rabbitTemplate.sendAndReceive("cat.exchange", "cat.getAll", message);
+        return rpcClient.sendAndReceive(CAT_EXCHANGE, "cat.search", request, new TypeReference<PageImpl<CatDto>>() {})
+                .thenApply(response -> response
+                        .<ResponseEntity<Page<CatDto>>>map(ResponseEntity::ok)
+                        .orElse(ResponseEntity.badRequest().build()));
+    }
+
+    // Counts are maintained by the pet service, so this does not depend on the number of cats.
+    @GetMapping("/stats")
+    @PreAuthorize("isAuthenticated()")
+    public CompletableFuture<ResponseEntity<CatStatsDto>> getStats(@RequestParam(required = false) UUID ownerId) {
+        Map<String, Object> requestParams = new HashMap<>();
+        requestParams.put("ownerId", ownerId);
+
+        return rpcClient.sendAndReceive(CAT_EXCHANGE, "cat.stats", requestParams, CatStatsDto.class)
+                .thenApply(response -> response
+                        .map(ResponseEntity::ok)
+                        .orElse(ResponseEntity.status(HttpStatus.REQUEST_TIMEOUT).build()));
+    }
 
-                if (response != null) {
-                    Page<CatDto> catsPage = objectMapper.readValue(response.getBody(),
-                            new TypeReference<PageImpl<CatDto>>() {});
-                    return ResponseEntity.ok(catsPage);
-                } else {
-                    return ResponseEntity.status(HttpStatus.REQUEST_TIMEOUT).build();
-                }
-            } catch (Exception e) {
-                throw new RuntimeException("Error processing request", e);
-            }
-        });
+    // Cursor based alternative to the paged listing: no count query, and deep slices cost the same as the first one.
+    @GetMapping("/scroll")
+    @PreAuthorize("isAuthenticated()")
+    public CompletableFuture<ResponseEntity<CursorPage<CatDto>>> scrollCats(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "name") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDir,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
+        if (size < 1 || size > MAX_SCROLL_SIZE || !isValidCursor(cursor)) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+
+        ScrollRequest request = new ScrollRequest(cursor, size, sortBy, sortDir, withTotal);
+
+        return rpcClient.sendAndReceive(CAT_EXCHANGE, "cat.scroll", request, new TypeReference<CursorPage<CatDto>>() {})
+                .thenApply(response -> response
+                        .map(ResponseEntity::ok)
+                        .orElse(ResponseEntity.badRequest().build()));
     }
 
     @PostMapping("/{id1}/friends/{id2}")
-    @PreAuthorize("(hasRole('USER') and (@catSecurityService.isCatOwner(#id1, authentication.name) or @catSecurityService.isCatOwner(#id2, authentication.name))) or hasRole('ADMIN')")
+    @PreAuthorize("(hasRole('USER') and (@catSecurityService.isCatOwner(#id1, authentication.principal.getOwnerId()) or @catSecurityService.isCatOwner(#id2, authentication.principal.getOwnerId()))) or hasRole('ADMIN')")
     public CompletableFuture<ResponseEntity<Void>> makeFriends(
             @PathVariable UUID id1,
             @PathVariable UUID id2) {
 
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                String correlationId = UUID.randomUUID().toString();
-
-                Map<String, UUID> request = Map.of("id1", id1, "id2", id2);
-
-                MessageProperties properties = new MessageProperties();
-                properties.setCorrelationId(correlationId);
-                properties.setReplyTo("cat.makeFriends.reply.queue");
+        Map<String, UUID> request = Map.of("id1", id1, "id2", id2);
 
-                Message message = new Message(objectMapper.writeValueAsBytes(request), properties);
-
-                Message response = rabbitTemplate.sendAndReceive("cat.exchange", "cat.makeFriends", message);
-
-                if (response != null) {
-                    boolean success = objectMapper.readValue(response.getBody(), Boolean.class);
-                    return success ? ResponseEntity.ok().build() : ResponseEntity.badRequest().build();
-                } else {
-                    return ResponseEntity.status(HttpStatus.REQUEST_TIMEOUT).build();
-                }
-            } catch (Exception e) {
-                throw new RuntimeException("Error processing request", e);
-            }
-        });
+        return rpcClient.sendAndReceive(CAT_EXCHANGE, "cat.makeFriends", request, Boolean.class)
+                .thenApply(response -> response
+                        .map(success -> success ? ResponseEntity.ok().<Void>build() : ResponseEntity.badRequest().<Void>build())
+                        .orElse(ResponseEntity.status(HttpStatus.REQUEST_TIMEOUT).build()));
     }
 
     @DeleteMapping("/{id1}/friends/{id2}")
-    @PreAuthorize("(hasRole('USER') and (@catSecurityService.isCatOwner(#id1, authentication.name) or @catSecurityService.isCatOwner(#id2, authentication.name))) or hasRole('ADMIN')")
+    @PreAuthorize("(hasRole('USER') and (@catSecurityService.isCatOwner(#id1, authentication.principal.getOwnerId()) or @catSecurityService.isCatOwner(#id2, authentication.principal.getOwnerId()))) or hasRole('ADMIN')")
     public CompletableFuture<ResponseEntity<Void>> deleteFriendship(
             @PathVariable UUID id1,
             @PathVariable UUID id2) {
 
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                String correlationId = UUID.randomUUID().toString();
+        Map<String, UUID> request = Map.of("id1", id1, "id2", id2);
 
-                Map<String, UUID> request = Map.of("id1", id1, "id2", id2);
+        return rpcClient.sendAndReceive(CAT_EXCHANGE, "cat.deleteFriendship", request, Boolean.class)
+                .thenApply(response -> response
+                        .map(success -> success ? ResponseEntity.ok().<Void>build() : ResponseEntity.badRequest().<Void>build())
+                        .orElse(ResponseEntity.status(HttpStatus.REQUEST_TIMEOUT).build()));
+    }
 
-                MessageProperties properties = new MessageProperties();
-                properties.setCorrelationId(correlationId);
-                properties.setReplyTo("cat.deleteFriendship.reply.queue");
+    @GetMapping("/{id1}/friends/{id2}/mutual")
+    @PreAuthorize("isAuthenticated()")
+    public CompletableFuture<ResponseEntity<List<UUID>>> getMutualFriends(
+            @PathVariable UUID id1,
+            @PathVariable UUID id2) {
 
-                Message message = new Message(objectMapper.writeValueAsBytes(request), properties);
+        Map<String, UUID> request = Map.of("id1", id1, "id2", id2);
 
-                Message response = rabbitTemplate.sendAndReceive("cat.exchange", "cat.deleteFriendship", message);
+        return rpcClient.sendAndReceive(CAT_EXCHANGE, "cat.mutualFriends", request, new TypeReference<List<UUID>>() {})
+                .thenApply(response -> response
+                        .<ResponseEntity<List<UUID>>>map(ResponseEntity::ok)
+                        .orElse(ResponseEntity.status(HttpStatus.REQUEST_TIMEOUT).build()));
+    }
 
-                if (response != null) {
-                    boolean success = objectMapper.readValue(response.getBody(), Boolean.class);
-                    return success ? ResponseEntity.ok().build() : ResponseEntity.badRequest().build();
-                } else {
-                    return ResponseEntity.status(HttpStatus.REQUEST_TIMEOUT).build();
-                }
-            } catch (Exception e) {
-                throw new RuntimeException("Error processing request", e);
-            }
-        });
+    @GetMapping("/{id}/friends-of-friends")
+    @PreAuthorize("isAuthenticated()")
+    public CompletableFuture<ResponseEntity<List<UUID>>> getFriendsOfFriends(
+            @PathVariable UUID id,
+            @RequestParam(defaultValue = "100") int limit) {
+        if (limit < 1 || limit > MAX_BULK_SIZE) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+
+        Map<String, Object> request = Map.of("id", id, "limit", limit);
+
+        return rpcClient.sendAndReceive(CAT_EXCHANGE, "cat.friendsOfFriends", request, new TypeReference<List<UUID>>() {})
+                .thenApply(response -> response
+                        .<ResponseEntity<List<UUID>>>map(ResponseEntity::ok)
+                        .orElse(ResponseEntity.status(HttpStatus.REQUEST_TIMEOUT).build()));
     }
 
-    @DeleteMapping("/{id}")
-    @PreAuthorize("(hasRole('USER') and @catSecurityService.isCatOwner(#id, authentication.name)) or hasRole('ADMIN')")
-    public CompletableFuture<ResponseEntity<Void>> deleteCat(@PathVariable UUID id) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                String correlationId = UUID.randomUUID().toString();
+    // Ranked by the number of common friends; at most MAX_SUGGESTIONS per cat.
+    @GetMapping("/{id}/suggestions")
+    @PreAuthorize("isAuthenticated()")
+    public CompletableFuture<ResponseEntity<List<CatSuggestionDto>>> getSuggestions(
+            @PathVariable UUID id,
+            @RequestParam(defaultValue = "10") int limit) {
+        if (limit < 1 || limit > MAX_SUGGESTIONS) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+
+        Map<String, Object> request = Map.of("id", id, "limit", limit);
+
+        return rpcClient.sendAndReceive(CAT_EXCHANGE, "cat.suggestions", request, new TypeReference<List<CatSuggestionDto>>() {})
+                .thenApply(response -> response
+                        .<ResponseEntity<List<CatSuggestionDto>>>map(ResponseEntity::ok)
+                        .orElse(ResponseEntity.status(HttpStatus.REQUEST_TIMEOUT).build()));
+    }
 
-                MessageProperties properties = new MessageProperties();
-                properties.setCorrelationId(correlationId);
-                properties.setReplyTo("cat.delete.reply.queue");
+    // 404 when the cats are not connected within the pet service's maximum separation.
+    @GetMapping("/{id1}/separation/{id2}")
+    @PreAuthorize("isAuthenticated()")
+    public CompletableFuture<ResponseEntity<Integer>> getSeparation(
+            @PathVariable UUID id1,
+            @PathVariable UUID id2) {
 
-                Message message = new Message(id.toString().getBytes(), properties);
+        Map<String, UUID> request = Map.of("id1", id1, "id2", id2);
 
-                Message response = rabbitTemplate.sendAndReceive("cat.exchange", "cat.delete", message);
+        return rpcClient.sendAndReceive(CAT_EXCHANGE, "cat.separation", request, Integer.class)
+                .thenApply(response -> response
+                        .map(degrees -> degrees < 0 ? ResponseEntity.notFound().<Integer>build() : ResponseEntity.ok(degrees))
+                        .orElse(ResponseEntity.status(HttpStatus.REQUEST_TIMEOUT).build()));
+    }
 
-                if (response != null) {
-                    return ResponseEntity.noContent().build();
-                } else {
-                    return ResponseEntity.status(HttpStatus.REQUEST_TIMEOUT).build();
-                }
-            } catch (Exception e) {
-                throw new RuntimeException("Error processing request", e);
-            }
-        });
+    @DeleteMapping("/{id}")
+    @PreAuthorize("(hasRole('USER') and @catSecurityService.isCatOwner(#id, authentication.principal.getOwnerId())) or hasRole('ADMIN')")
+    public CompletableFuture<ResponseEntity<Void>> deleteCat(@PathVariable UUID id) {
+        return rpcClient.sendAndReceive(CAT_EXCHANGE, "cat.delete", id)
+                .thenApply(response -> response
+                        .map(reply -> ResponseEntity.noContent().<Void>build())
+                        .orElse(ResponseEntity.status(HttpStatus.REQUEST_TIMEOUT).build()));
     }
 
     @PutMapping
-    @PreAuthorize("(hasRole('USER') and @catSecurityService.isCatOwner(#catDto.id, authentication.name)) or hasRole('ADMIN')")
+    @PreAuthorize("(hasRole('USER') and @catSecurityService.isCatOwner(#catDto.id, authentication.principal.getOwnerId())) or hasRole('ADMIN')")
     public CompletableFuture<ResponseEntity<CatDto>> updateCat(@Valid @RequestBody CatDto catDto) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                String correlationId = UUID.randomUUID().toString();
-
-                MessageProperties properties = new MessageProperties();
-                properties.setCorrelationId(correlationId);
-                properties.setReplyTo("cat.update.reply.queue");
-
-                Message message = new Message(objectMapper.writeValueAsBytes(catDto), properties);
-
-                Message response = rabbitTemplate.sendAndReceive("cat.exchange", "cat.update", message);
-
-                if (response != null) {
-                    CatDto updatedCat = objectMapper.readValue(response.getBody(), CatDto.class);
-                    return ResponseEntity.ok(updatedCat);
-                } else {
-                    return ResponseEntity.notFound().build();
-                }
-            } catch (Exception e) {
-                throw new RuntimeException("Error processing request", e);
-            }
-        });
+        return rpcClient.sendAndReceive(CAT_EXCHANGE, "cat.update", catDto, CatDto.class)
+                .thenApply(response -> response
+                        .map(ResponseEntity::ok)
+                        .orElse(ResponseEntity.notFound().build()));
+    }
+
+    @ExceptionHandler(ConstraintViolationException.class)
+    public ResponseEntity<Void> handleConstraintViolation(ConstraintViolationException e) {
+        return ResponseEntity.badRequest().build();
+    }
+
+    // The pet service could not check the owner, so the request was neither valid nor invalid.
+    @ExceptionHandler(OperationFailedException.class)
+    public ResponseEntity<Void> handleOperationFailed(OperationFailedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+    }
+
+    private static boolean isValidCursor(String cursor) {
+        if (cursor == null) {
+            return true;
+        }
+        try {
+            ScrollCursor.decode(cursor);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
     }
 }
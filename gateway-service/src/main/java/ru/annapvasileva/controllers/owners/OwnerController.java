@@ -1,11 +1,7 @@
 package ru.annapvasileva.controllers.owners;
 
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
-import org.springframework.amqp.core.Message;
-import org.springframework.amqp.core.MessageProperties;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.http.HttpStatus;
@@ -13,10 +9,17 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.web.bind.annotation.*;
+import ru.annapvasileva.cats.CatDto;
 import ru.annapvasileva.owners.CreateOwnerRequest;
+import ru.annapvasileva.owners.OwnerDeletionDto;
 import ru.annapvasileva.owners.OwnerDto;
-import ru.annapvasileva.services.users.UserService;
+import ru.annapvasileva.services.owners.OwnerQueryService;
+import ru.annapvasileva.services.rpc.RpcClient;
+import ru.annapvasileva.util.CursorPage;
+import ru.annapvasileva.util.ScrollCursor;
+import ru.annapvasileva.util.ScrollRequest;
 
+import java.net.URI;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
@@ -27,68 +30,34 @@ import java.util.concurrent.CompletableFuture;
 @EnableMethodSecurity(prePostEnabled = true)
 public class OwnerController {
 
-    private final RabbitTemplate rabbitTemplate;
-    private final ObjectMapper objectMapper;
-    private final UserService userService;
+    private static final String OWNER_EXCHANGE = "owner.exchange";
+    private static final String CAT_EXCHANGE = "cat.exchange";
+    private static final int MAX_SCROLL_SIZE = 1000;
 
-    public OwnerController(RabbitTemplate rabbitTemplate, ObjectMapper objectMapper, UserService userService) {
-        this.rabbitTemplate = rabbitTemplate;
-        this.objectMapper = objectMapper;
-        this.userService = userService;
+    private final RpcClient rpcClient;
+    private final OwnerQueryService ownerQueryService;
+
+    public OwnerController(RpcClient rpcClient, OwnerQueryService ownerQueryService) {
+        this.rpcClient = rpcClient;
+        this.ownerQueryService = ownerQueryService;
     }
 
     @PostMapping
     @PreAuthorize("permitAll()")
     public CompletableFuture<ResponseEntity<OwnerDto>> createOwner(@Valid @RequestBody CreateOwnerRequest request) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                String correlationId = UUID.randomUUID().toString();
-
-                MessageProperties properties = new MessageProperties();
-                properties.setCorrelationId(correlationId);
-                properties.setReplyTo("owner.create.reply.queue");
-
-                Message message = new Message(objectMapper.writeValueAsBytes(request), properties);
-
-                Message response = rabbitTemplate.sendAndReceive("owner.exchange", "owner.create", message);
-
-                if (response != null) {
-                    OwnerDto ownerDto = objectMapper.readValue(response.getBody(), OwnerDto.class);
-                    return ResponseEntity.ok(ownerDto);
-                } else {
-                    return ResponseEntity.badRequest().build();
-                }
-            } catch (Exception e) {
-                throw new RuntimeException("Error processing request", e);
-            }
-        });
+        return rpcClient.sendAndReceive(OWNER_EXCHANGE, "owner.create", request, OwnerDto.class)
+                .thenApply(response -> response
+                        .map(ResponseEntity::ok)
+                        .orElse(ResponseEntity.badRequest().build()));
     }
 
     @GetMapping("/{id}")
     @PreAuthorize("isAuthenticated()")
     public CompletableFuture<ResponseEntity<OwnerDto>> getOwner(@PathVariable UUID id) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                String correlationId = UUID.randomUUID().toString();
-
-                MessageProperties properties = new MessageProperties();
-                properties.setCorrelationId(correlationId);
-                properties.setReplyTo("owner.get.reply.queue");
-
-                Message message = new Message(id.toString().getBytes(), properties);
-
-                Message response = rabbitTemplate.sendAndReceive("owner.exchange", "owner.get", message);
-
-                if (response != null) {
-                    OwnerDto ownerDto = objectMapper.readValue(response.getBody(), OwnerDto.class);
-                    return ResponseEntity.ok(ownerDto);
-                } else {
-                    return ResponseEntity.notFound().build();
-                }
-            } catch (Exception e) {
-                throw new RuntimeException("Error processing request", e);
-            }
-        });
+        return ownerQueryService.getOwner(id)
+                .thenApply(response -> response
+                        .map(ResponseEntity::ok)
+                        .orElse(ResponseEntity.notFound().build()));
     }
 
     @GetMapping
@@ -99,150 +68,124 @@ public class OwnerController {
             @RequestParam(defaultValue = "name") String sortBy, // Sort by which field is required
             @RequestParam(defaultValue = "asc") String sortDir // Sorting direction ("asc" or "desc")
     ) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                String correlationId = UUID.randomUUID().toString();
-
-                Map<String, Object> requestParams = new HashMap<>();
-                requestParams.put("page", page);
-                requestParams.put("size", size);
-                requestParams.put("sortBy", sortBy);
-                requestParams.put("sortDir", sortDir);
-
-                MessageProperties properties = new MessageProperties();
-                properties.setCorrelationId(correlationId);
-                properties.setReplyTo("owner.getAll.reply.queue");
-
-                Message message = new Message(objectMapper.writeValueAsBytes(requestParams), properties);
-
-                Message response = rabbitTemplate.sendAndReceive("owner.exchange", "owner.getAll", message);
-
-                if (response != null) {
-                    Page<OwnerDto> ownersPage = objectMapper.readValue(response.getBody(),
-                            new TypeReference<PageImpl<OwnerDto>>() {});
-                    return ResponseEntity.ok(ownersPage);
-                } else {
-                    return ResponseEntity.status(HttpStatus.REQUEST_TIMEOUT).build();
-                }
-            } catch (Exception e) {
-                throw new RuntimeException("Error processing request", e);
-            }
-        });
+        Map<String, Object> requestParams = new HashMap<>();
+        requestParams.put("page", page);
+        requestParams.put("size", size);
+        requestParams.put("sortBy", sortBy);
+        requestParams.put("sortDir", sortDir);
+
+        return rpcClient.sendAndReceive(OWNER_EXCHANGE, "owner.getAll", requestParams, new TypeReference<PageImpl<OwnerDto>>() {})
+                .thenApply(response -> response
+                        .<ResponseEntity<Page<OwnerDto>>>map(ResponseEntity::ok)
+                        .orElse(ResponseEntity.status(HttpStatus.REQUEST_TIMEOUT).build()));
     }
 
-    @PostMapping("/{ownerId}/pets/{petId}")
-    @PreAuthorize("(hasRole('USER') and @catSecurityService.isCatOwner(#petId, authentication.name)) or hasRole('ADMIN')")
-    public CompletableFuture<ResponseEntity<Void>> changeOwnerForPet(@PathVariable UUID ownerId, @PathVariable UUID petId) {
-
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                String correlationId = UUID.randomUUID().toString();
-
-                Map<String, UUID> request = Map.of("ownerId", ownerId, "petId", petId);
-
-                MessageProperties properties = new MessageProperties();
-                properties.setCorrelationId(correlationId);
-                properties.setReplyTo("owner.changeForPet.reply.queue");
+    // Cursor based alternative to the paged listing: no count query, and deep slices cost the same as the first one.
+    @GetMapping("/scroll")
+    @PreAuthorize("isAuthenticated()")
+    public CompletableFuture<ResponseEntity<CursorPage<OwnerDto>>> scrollOwners(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "lastName") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDir,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
+        if (size < 1 || size > MAX_SCROLL_SIZE || !isValidCursor(cursor)) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+
+        ScrollRequest request = new ScrollRequest(cursor, size, sortBy, sortDir, withTotal);
+
+        return rpcClient.sendAndReceive(OWNER_EXCHANGE, "owner.scroll", request, new TypeReference<CursorPage<OwnerDto>>() {})
+                .thenApply(response -> response
+                        .map(ResponseEntity::ok)
+                        .orElse(ResponseEntity.badRequest().build()));
+    }
 
-                Message message = new Message(objectMapper.writeValueAsBytes(request), properties);
+    // Served by the owner_id index in the pet service instead of filtering GET /api/cats on the client.
+    @GetMapping("/{id}/pets")
+    @PreAuthorize("isAuthenticated()")
+    public CompletableFuture<ResponseEntity<Page<CatDto>>> getPets(
+            @PathVariable UUID id,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size) {
+        if (page < 0 || size < 1 || size > MAX_SCROLL_SIZE) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+
+        Map<String, Object> requestParams = new HashMap<>();
+        requestParams.put("ownerId", id);
+        requestParams.put("page", page);
+        requestParams.put("size", size);
+
+        return rpcClient.sendAndReceive(CAT_EXCHANGE, "cat.getByOwner", requestParams, new TypeReference<PageImpl<CatDto>>() {})
+                .thenApply(response -> response
+                        .<ResponseEntity<Page<CatDto>>>map(ResponseEntity::ok)
+                        .orElse(ResponseEntity.status(HttpStatus.REQUEST_TIMEOUT).build()));
+    }
 
-                Message response = rabbitTemplate.sendAndReceive("owner.exchange", "owner.changeForPet", message);
+    @PostMapping("/{ownerId}/pets/{petId}")
+    @PreAuthorize("(hasRole('USER') and @catSecurityService.isCatOwner(#petId, authentication.principal.getOwnerId())) or hasRole('ADMIN')")
+    public CompletableFuture<ResponseEntity<Void>> changeOwnerForPet(@PathVariable UUID ownerId, @PathVariable UUID petId) {
+        Map<String, UUID> request = Map.of("ownerId", ownerId, "petId", petId);
 
-                if (response != null) {
-                    boolean success = objectMapper.readValue(response.getBody(), Boolean.class);
-                    return success ? ResponseEntity.noContent().build() : ResponseEntity.badRequest().build();
-                } else {
-                    return ResponseEntity.status(HttpStatus.REQUEST_TIMEOUT).build();
-                }
-            } catch (Exception e) {
-                throw new RuntimeException("Error processing request", e);
-            }
-        });
+        return rpcClient.sendAndReceive(OWNER_EXCHANGE, "owner.changeForPet", request, Boolean.class)
+                .thenApply(response -> response
+                        .map(success -> success ? ResponseEntity.noContent().<Void>build() : ResponseEntity.badRequest().<Void>build())
+                        .orElse(ResponseEntity.status(HttpStatus.REQUEST_TIMEOUT).build()));
     }
 
     @DeleteMapping("/{ownerId}/pets/{petId}")
-    @PreAuthorize("(hasRole('USER') and (authentication.principal.getOwnerId() == #ownerId) and @catSecurityService.isCatOwner(#petId, authentication.name)) or hasRole('ADMIN')")
+    @PreAuthorize("(hasRole('USER') and (authentication.principal.getOwnerId() == #ownerId) and @catSecurityService.isCatOwner(#petId, authentication.principal.getOwnerId())) or hasRole('ADMIN')")
     public CompletableFuture<ResponseEntity<Void>> deletePet(@PathVariable UUID ownerId,
                                           @PathVariable UUID petId) {
+        Map<String, UUID> request = Map.of("ownerId", ownerId, "petId", petId);
 
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                String correlationId = UUID.randomUUID().toString();
-
-                Map<String, UUID> request = Map.of("ownerId", ownerId, "petId", petId);
-
-                MessageProperties properties = new MessageProperties();
-                properties.setCorrelationId(correlationId);
-                properties.setReplyTo("owner.deletePet.reply.queue");
-
-                Message message = new Message(objectMapper.writeValueAsBytes(request), properties);
-
-                Message response = rabbitTemplate.sendAndReceive("owner.exchange", "owner.deletePet", message);
-
-                if (response != null) {
-                    boolean success = objectMapper.readValue(response.getBody(), Boolean.class);
-                    return success ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
-                } else {
-                    return ResponseEntity.status(HttpStatus.REQUEST_TIMEOUT).build();
-                }
-            } catch (Exception e) {
-                throw new RuntimeException("Error processing request", e);
-            }
-        });
+        return rpcClient.sendAndReceive(OWNER_EXCHANGE, "owner.deletePet", request, Boolean.class)
+                .thenApply(response -> response
+                        .map(success -> success ? ResponseEntity.ok().<Void>build() : ResponseEntity.notFound().<Void>build())
+                        .orElse(ResponseEntity.status(HttpStatus.REQUEST_TIMEOUT).build()));
     }
 
+    // Only starts the deletion: the pets and the users are removed in the background,
+    // and the progress can be followed at the returned location.
     @DeleteMapping("/{id}")
     @PreAuthorize("(hasRole('USER') and #id == authentication.principal.getOwnerId()) or hasRole('ADMIN')")
     public CompletableFuture<ResponseEntity<Void>> deleteOwner(@PathVariable UUID id) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                String correlationId = UUID.randomUUID().toString();
-
-                MessageProperties properties = new MessageProperties();
-                properties.setCorrelationId(correlationId);
-                properties.setReplyTo("owner.delete.reply.queue");
-
-                Message message = new Message(id.toString().getBytes(), properties);
-
-                Message response = rabbitTemplate.sendAndReceive("owner.exchange", "owner.delete", message);
-
-                if (response != null) {
-                    userService.deleteAllUsersForOwner(id);
+        return rpcClient.sendAndReceive(OWNER_EXCHANGE, "owner.delete", id, Boolean.class)
+                .thenApply(response -> response
+                        .map(found -> found
+                                ? ResponseEntity.accepted().location(URI.create("/api/owners/" + id + "/deletion")).<Void>build()
+                                : ResponseEntity.notFound().<Void>build())
+                        .orElse(ResponseEntity.status(HttpStatus.REQUEST_TIMEOUT).build()));
+    }
 
-                    return ResponseEntity.noContent().build();
-                } else {
-                    return ResponseEntity.status(HttpStatus.REQUEST_TIMEOUT).build();
-                }
-            } catch (Exception e) {
-                throw new RuntimeException("Error processing request", e);
-            }
-        });
+    @GetMapping("/{id}/deletion")
+    @PreAuthorize("(hasRole('USER') and #id == authentication.principal.getOwnerId()) or hasRole('ADMIN')")
+    public CompletableFuture<ResponseEntity<OwnerDeletionDto>> getDeletion(@PathVariable UUID id) {
+        return rpcClient.sendAndReceive(OWNER_EXCHANGE, "owner.getDeletion", id, OwnerDeletionDto.class)
+                .thenApply(response -> response
+                        .map(ResponseEntity::ok)
+                        .orElse(ResponseEntity.notFound().build()));
     }
 
     @PutMapping
     @PreAuthorize("(hasRole('USER') and #ownerDto.id == authentication.principal.getOwnerId()) or hasRole('ADMIN')")
     public CompletableFuture<ResponseEntity<OwnerDto>> updateOwner(@Valid @RequestBody OwnerDto ownerDto) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                String correlationId = UUID.randomUUID().toString();
-
-                MessageProperties properties = new MessageProperties();
-                properties.setCorrelationId(correlationId);
-                properties.setReplyTo("owner.update.reply.queue");
-
-                Message message = new Message(objectMapper.writeValueAsBytes(ownerDto), properties);
-
-                Message response = rabbitTemplate.sendAndReceive("owner.exchange", "owner.update", message);
-
-                if (response != null) {
-                    OwnerDto updatedOwner = objectMapper.readValue(response.getBody(), OwnerDto.class);
-                    return ResponseEntity.ok(updatedOwner);
-                } else {
-                    return ResponseEntity.notFound().build();
-                }
-            } catch (Exception e) {
-                throw new RuntimeException("Error processing request", e);
-            }
-        });
+        return rpcClient.sendAndReceive(OWNER_EXCHANGE, "owner.update", ownerDto, OwnerDto.class)
+                .thenApply(response -> response
+                        .map(ResponseEntity::ok)
+                        .orElse(ResponseEntity.notFound().build()));
+    }
+
+    private static boolean isValidCursor(String cursor) {
+        if (cursor == null) {
+            return true;
+        }
+        try {
+            ScrollCursor.decode(cursor);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
     }
 }
@@ -0,0 +1,46 @@
+package ru.annapvasileva.persistence;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.UUID;
+
+/**
+ * Owners whose deletion has started, in deleting_owners: the fence that keeps users from being added to them,
+ * since OwnerQueryService may still serve a cached owner after the users step has run.
+ * User writes lock their owner shared and markDeleting locks it exclusively, so the users step only deletes
+ * once every write that did not see the mark has committed, and finds their users.
+ * Rows are never removed, as in the pet service: a user write that checked the owner before the deletion
+ * reached it must still be turned away afterwards, and one row per deleted owner is cheap.
+ */
+@Repository
+public class DeletingOwnerRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public DeletingOwnerRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Idempotent. Waits for the user writes that hold a lock on the owner.
+    public void markDeleting(UUID ownerId) {
+        jdbcTemplate.query(
+                "select pg_advisory_xact_lock(hashtext('deleting_owners'), hashtext(cast(? as text)))",
+                ps -> ps.setObject(1, ownerId),
+                rs -> {});
+        jdbcTemplate.update("insert into deleting_owners (owner_id) values (?) on conflict do nothing", ownerId);
+    }
+
+    // Locks the owner against markDeleting until the end of the transaction.
+    // Returns false if it is already being deleted.
+    public boolean lockNotDeleting(UUID ownerId) {
+        jdbcTemplate.query(
+                "select pg_advisory_xact_lock_shared(hashtext('deleting_owners'), hashtext(cast(? as text)))",
+                ps -> ps.setObject(1, ownerId),
+                rs -> {});
+        Boolean deleting = jdbcTemplate.query(
+                "select exists (select 1 from deleting_owners where owner_id = ?)",
+                ps -> ps.setObject(1, ownerId),
+                rs -> rs.next() && rs.getBoolean(1));
+        return !Boolean.TRUE.equals(deleting);
+    }
+}
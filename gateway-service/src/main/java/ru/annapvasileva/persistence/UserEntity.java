@@ -5,7 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
-import org.hibernate.annotations.UuidGenerator;
+import ru.annapvasileva.util.TimeOrderedUuid;
 
 import java.util.UUID;
 
@@ -17,7 +17,7 @@ import java.util.UUID;
 @AllArgsConstructor()
 public class UserEntity {
     @Id
-    @UuidGenerator(style = UuidGenerator.Style.RANDOM)
+    @TimeOrderedUuid
     private UUID id;
 
     @Column(unique = true)
@@ -2,12 +2,15 @@ package ru.annapvasileva.persistence;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface UserRepository  extends JpaRepository<UserEntity, UUID> {
     Optional<UserEntity> findByUsername(String username);
 
+    List<UserEntity> findAllByOwnerId(UUID ownerId);
+
     void deleteByOwnerId(UUID ownerId);
 
     void deleteByUsername(String username);
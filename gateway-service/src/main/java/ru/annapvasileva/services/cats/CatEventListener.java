@@ -0,0 +1,42 @@
+package ru.annapvasileva.services.cats;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+import ru.annapvasileva.cats.CatEvent;
+import ru.annapvasileva.cats.CatEventType;
+
+@Component
+public class CatEventListener {
+    private final ObjectMapper objectMapper;
+    private final CatOwnershipIndex catOwnershipIndex;
+    private final CatQueryService catQueryService;
+
+    public CatEventListener(
+            ObjectMapper objectMapper,
+            CatOwnershipIndex catOwnershipIndex,
+            CatQueryService catQueryService) {
+        this.objectMapper = objectMapper;
+        this.catOwnershipIndex = catOwnershipIndex;
+        this.catQueryService = catQueryService;
+    }
+
+    // One consumer, so ownership changes reach the index in publication order.
+    @RabbitListener(queues = "#{catEventQueue.name}", concurrency = "1")
+    public void handleCatEvent(Message message) throws Exception {
+        CatEvent event = objectMapper.readValue(message.getBody(), CatEvent.class);
+        // Both cats of a friendship change also get an UPDATED event, which is enough for the gateway.
+        if (event.getType() == CatEventType.FRIENDSHIP_ADDED || event.getType() == CatEventType.FRIENDSHIP_REMOVED) {
+            return;
+        }
+        catQueryService.evict(event.getCatId());
+
+        if (event.getType() == CatEventType.DELETED) {
+            catOwnershipIndex.remove(event.getCatId());
+        } else if (event.getOwnerId() != null) {
+            // Only events of the cat's own create/update carry an owner, and those are published in commit order.
+            catOwnershipIndex.put(event.getCatId(), event.getOwnerId());
+        }
+    }
+}
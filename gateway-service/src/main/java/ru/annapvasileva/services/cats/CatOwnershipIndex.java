@@ -0,0 +1,193 @@
+package ru.annapvasileva.services.cats;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * catId -> ownerId projection kept by the gateway.
+ * Both UUIDs are stored as longs in one flat array (open addressing, linear probing),
+ * so an entry costs four longs and no objects. The nil UUID marks a free slot.
+ * Reads are optimistic and never block; writes come from the cat event listener.
+ */
+@Component
+public class CatOwnershipIndex {
+    private static final int INITIAL_CAPACITY = 1 << 12;
+    private static final int SLOT_WIDTH = 4;
+
+    private final StampedLock lock = new StampedLock();
+    private final int maxEntries;
+
+    // Slot i keeps the cat id in table[4i], table[4i + 1] and the owner id in table[4i + 2], table[4i + 3].
+    // Keys and owners share one array, so a resize publishes them with a single store
+    // and an optimistic reader can never pair a new key layout with old owners.
+    private long[] table = new long[INITIAL_CAPACITY * SLOT_WIDTH];
+    private int size;
+
+    public CatOwnershipIndex(@Value("${cats.ownership-index.max-entries:5000000}") int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public Optional<UUID> getOwner(UUID catId) {
+        long msb = catId.getMostSignificantBits();
+        long lsb = catId.getLeastSignificantBits();
+
+        long stamp = lock.tryOptimisticRead();
+        UUID owner = find(table, msb, lsb);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                owner = find(table, msb, lsb);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return Optional.ofNullable(owner);
+    }
+
+    public void put(UUID catId, UUID ownerId) {
+        write(catId, ownerId, true);
+    }
+
+    // Used for values fetched over RPC, which must not overwrite a newer value delivered by an event.
+    public void putIfAbsent(UUID catId, UUID ownerId) {
+        write(catId, ownerId, false);
+    }
+
+    public void remove(UUID catId) {
+        long msb = catId.getMostSignificantBits();
+        long lsb = catId.getLeastSignificantBits();
+
+        long stamp = lock.writeLock();
+        try {
+            long[] table = this.table;
+            int mask = capacity(table) - 1;
+            int slot = indexOf(table, msb, lsb);
+            if (slot < 0) {
+                return;
+            }
+            // Backward-shift deletion keeps probe sequences intact without tombstones.
+            int hole = slot;
+            int next = (hole + 1) & mask;
+            while (!isFree(table, next)) {
+                int home = hash(table[SLOT_WIDTH * next], table[SLOT_WIDTH * next + 1]) & mask;
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    System.arraycopy(table, SLOT_WIDTH * next, table, SLOT_WIDTH * hole, SLOT_WIDTH);
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            Arrays.fill(table, SLOT_WIDTH * hole, SLOT_WIDTH * hole + SLOT_WIDTH, 0L);
+            size--;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void write(UUID catId, UUID ownerId, boolean overwrite) {
+        long msb = catId.getMostSignificantBits();
+        long lsb = catId.getLeastSignificantBits();
+
+        long stamp = lock.writeLock();
+        try {
+            int slot = indexOf(table, msb, lsb);
+            if (slot >= 0) {
+                if (overwrite) {
+                    table[SLOT_WIDTH * slot + 2] = ownerId.getMostSignificantBits();
+                    table[SLOT_WIDTH * slot + 3] = ownerId.getLeastSignificantBits();
+                }
+                return;
+            }
+            if (size >= maxEntries) {
+                return;
+            }
+            if ((size + 1) * 4L > capacity(table) * 3L) {
+                resize();
+            }
+            insert(table, msb, lsb, ownerId.getMostSignificantBits(), ownerId.getLeastSignificantBits());
+            size++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void resize() {
+        long[] oldTable = table;
+        long[] newTable = new long[oldTable.length * 2];
+        for (int i = 0; i < capacity(oldTable); i++) {
+            if (!isFree(oldTable, i)) {
+                int at = SLOT_WIDTH * i;
+                insert(newTable, oldTable[at], oldTable[at + 1], oldTable[at + 2], oldTable[at + 3]);
+            }
+        }
+        table = newTable;
+    }
+
+    private static UUID find(long[] table, long msb, long lsb) {
+        int mask = capacity(table) - 1;
+        int slot = hash(msb, lsb) & mask;
+        // Bounded so that a torn optimistic read can never spin forever.
+        for (int probes = 0; probes <= mask; probes++) {
+            int at = SLOT_WIDTH * slot;
+            long keyMsb = table[at];
+            long keyLsb = table[at + 1];
+            if (keyMsb == 0 && keyLsb == 0) {
+                return null;
+            }
+            if (keyMsb == msb && keyLsb == lsb) {
+                return new UUID(table[at + 2], table[at + 3]);
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    private static int indexOf(long[] table, long msb, long lsb) {
+        int mask = capacity(table) - 1;
+        int slot = hash(msb, lsb) & mask;
+        while (!isFree(table, slot)) {
+            if (table[SLOT_WIDTH * slot] == msb && table[SLOT_WIDTH * slot + 1] == lsb) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static void insert(long[] table, long msb, long lsb, long ownerMsb, long ownerLsb) {
+        int mask = capacity(table) - 1;
+        int slot = hash(msb, lsb) & mask;
+        while (!isFree(table, slot)) {
+            slot = (slot + 1) & mask;
+        }
+        int at = SLOT_WIDTH * slot;
+        table[at] = msb;
+        table[at + 1] = lsb;
+        table[at + 2] = ownerMsb;
+        table[at + 3] = ownerLsb;
+    }
+
+    private static boolean isFree(long[] table, int slot) {
+        return table[SLOT_WIDTH * slot] == 0 && table[SLOT_WIDTH * slot + 1] == 0;
+    }
+
+    private static int capacity(long[] table) {
+        return table.length / SLOT_WIDTH;
+    }
+
+    private static int hash(long msb, long lsb) {
+        long h = msb ^ lsb;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
@@ -0,0 +1,120 @@
+package ru.annapvasileva.services.cats;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.annapvasileva.cats.CatDto;
+import ru.annapvasileva.services.rpc.Generations;
+import ru.annapvasileva.services.rpc.RequestBatcher;
+import ru.annapvasileva.services.rpc.RpcClient;
+import ru.annapvasileva.services.rpc.SingleFlight;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Read-through access to single cats.
+ * Entries are dropped by cat events, so a cached CatDto is at most one event behind the pet service.
+ */
+@Service
+public class CatQueryService {
+    private static final int GENERATION_COUNTERS = 1 << 12;
+
+    private final RpcClient rpcClient;
+    private final Cache<UUID, CatDto> catCache;
+    // Advanced on every eviction of a key, so that a reply for that key which raced with an event is not cached.
+    private final Generations<UUID> generations = new Generations<>(GENERATION_COUNTERS);
+    private final SingleFlight<UUID, Optional<CatDto>> loads = new SingleFlight<>();
+    private final RequestBatcher<UUID, CatDto> batcher;
+
+    public CatQueryService(
+            RpcClient rpcClient,
+            Cache<UUID, CatDto> catCache,
+            ScheduledExecutorService rpcBatchScheduler,
+            @Value("${rpc.batch.max-size:64}") int maxBatchSize,
+            @Value("${rpc.batch.window:PT0.002S}") Duration batchWindow) {
+        this.rpcClient = rpcClient;
+        this.catCache = catCache;
+        this.batcher = new RequestBatcher<>(maxBatchSize, batchWindow, rpcBatchScheduler, this::fetchCats);
+    }
+
+    public CompletableFuture<Optional<CatDto>> getCat(UUID id) {
+        CatDto cached = catCache.getIfPresent(id);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(Optional.of(cached));
+        }
+
+        return loads.execute(id, this::load);
+    }
+
+    // Cached cats are served directly, the rest are fetched with one getBatch request. Unknown ids are left out.
+    public CompletableFuture<List<CatDto>> getCats(List<UUID> ids) {
+        List<UUID> distinctIds = ids.stream().distinct().toList();
+        Map<UUID, CatDto> found = new HashMap<>(catCache.getAllPresent(distinctIds));
+        List<UUID> missing = distinctIds.stream()
+                .filter(id -> !found.containsKey(id))
+                .toList();
+        if (missing.isEmpty()) {
+            return CompletableFuture.completedFuture(inOrder(distinctIds, found));
+        }
+
+        Map<UUID, Long> loadGenerations = new HashMap<>();
+        for (UUID id : missing) {
+            loadGenerations.put(id, generations.current(id));
+        }
+        return fetchCats(missing)
+                .thenApply(loaded -> {
+                    loaded.forEach((id, dto) -> cache(id, dto, loadGenerations.get(id)));
+                    found.putAll(loaded);
+                    return inOrder(distinctIds, found);
+                });
+    }
+
+    public void evict(UUID id) {
+        generations.advance(id);
+        loads.forget(id);
+        catCache.invalidate(id);
+    }
+
+    private CompletableFuture<Optional<CatDto>> load(UUID id) {
+        long generation = generations.current(id);
+        return batcher.load(id)
+                .thenApply(cat -> {
+                    cat.ifPresent(dto -> cache(id, dto, generation));
+                    return cat;
+                });
+    }
+
+    private CompletableFuture<Map<UUID, CatDto>> fetchCats(List<UUID> ids) {
+        return rpcClient.sendAndReceive("cat.exchange", "cat.getBatch", ids, new TypeReference<List<CatDto>>() {})
+                .thenApply(response -> response.orElse(List.of()).stream()
+                        .collect(Collectors.toMap(dto -> dto.id, Function.identity())));
+    }
+
+    private static List<CatDto> inOrder(List<UUID> ids, Map<UUID, CatDto> cats) {
+        return ids.stream()
+                .map(cats::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private void cache(UUID id, CatDto cat, long generation) {
+        if (!generations.isCurrent(id, generation)) {
+            return;
+        }
+        catCache.put(id, cat);
+        if (!generations.isCurrent(id, generation)) {
+            catCache.invalidate(id);
+        }
+    }
+}
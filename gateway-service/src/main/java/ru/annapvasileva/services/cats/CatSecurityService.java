@@ -1,51 +1,36 @@
 package ru.annapvasileva.services.cats;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.springframework.amqp.core.Message;
-import org.springframework.amqp.core.MessageProperties;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Service;
 import ru.annapvasileva.cats.CatDto;
-import ru.annapvasileva.persistence.UserEntity;
-import ru.annapvasileva.persistence.UserRepository;
 
-import java.io.IOException;
 import java.util.Optional;
 import java.util.UUID;
 
 @Service
 public class CatSecurityService {
-    private final UserRepository userRepository;
-    private final RabbitTemplate rabbitTemplate;
-    private final ObjectMapper objectMapper;
+    private final CatQueryService catQueryService;
+    private final CatOwnershipIndex catOwnershipIndex;
 
     public CatSecurityService(
-            RabbitTemplate rabbitTemplate,
-            UserRepository userRepository,
-            ObjectMapper objectMapper) {
-        this.rabbitTemplate = rabbitTemplate;
-        this.userRepository = userRepository;
-        this.objectMapper = objectMapper;
+            CatQueryService catQueryService,
+            CatOwnershipIndex catOwnershipIndex) {
+        this.catQueryService = catQueryService;
+        this.catOwnershipIndex = catOwnershipIndex;
     }
 
-    public boolean isCatOwner(UUID catId, String username) throws IOException {
-        String correlationId = UUID.randomUUID().toString();
-        MessageProperties properties = new MessageProperties();
-        properties.setCorrelationId(correlationId);
-        properties.setReplyTo("cat.get.reply.queue");
-        Message message = new Message(catId.toString().getBytes(), properties);
-        Message response = rabbitTemplate.sendAndReceive("cat.exchange", "cat.get", message);
-        if (response == null) {
-            return false;
+    public boolean isCatOwner(UUID catId, UUID ownerId) {
+        Optional<UUID> indexedOwner = catOwnershipIndex.getOwner(catId);
+        if (indexedOwner.isPresent()) {
+            return indexedOwner.get().equals(ownerId);
         }
-        CatDto catDto = objectMapper.readValue(response.getBody(), CatDto.class);
 
-        Optional<UserEntity> userOpt = userRepository.findByUsername(username);
-        if (userOpt.isEmpty()) {
+        // The index only knows cats changed since this gateway started, so fall back to the pet service.
+        Optional<CatDto> cat = catQueryService.getCat(catId).join();
+        if (cat.isEmpty()) {
             return false;
         }
+        catOwnershipIndex.putIfAbsent(catId, cat.get().ownerId);
 
-        UUID owner = userOpt.get().getOwnerId();
-        return catDto.ownerId.equals(owner);
+        return cat.get().ownerId.equals(ownerId);
     }
 }
@@ -0,0 +1,26 @@
+package ru.annapvasileva.services.owners;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+import ru.annapvasileva.owners.OwnerEvent;
+
+@Component
+public class OwnerEventListener {
+    private final ObjectMapper objectMapper;
+    private final OwnerQueryService ownerQueryService;
+
+    public OwnerEventListener(ObjectMapper objectMapper, OwnerQueryService ownerQueryService) {
+        this.objectMapper = objectMapper;
+        this.ownerQueryService = ownerQueryService;
+    }
+
+    // One consumer, so an eviction is never overtaken by an older one.
+    @RabbitListener(queues = "#{ownerEventQueue.name}", concurrency = "1")
+    public void handleOwnerEvent(Message message) throws Exception {
+        OwnerEvent event = objectMapper.readValue(message.getBody(), OwnerEvent.class);
+
+        ownerQueryService.evict(event.getOwnerId());
+    }
+}
@@ -0,0 +1,88 @@
+package ru.annapvasileva.services.owners;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.annapvasileva.owners.OwnerDto;
+import ru.annapvasileva.services.rpc.Generations;
+import ru.annapvasileva.services.rpc.RequestBatcher;
+import ru.annapvasileva.services.rpc.RpcClient;
+import ru.annapvasileva.services.rpc.SingleFlight;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Read-through access to single owners.
+ * Entries are dropped by owner events, so a cached OwnerDto is at most one event behind the owner service.
+ */
+@Service
+public class OwnerQueryService {
+    private static final int GENERATION_COUNTERS = 1 << 12;
+
+    private final RpcClient rpcClient;
+    private final Cache<UUID, OwnerDto> ownerCache;
+    // Advanced on every eviction of a key, so that a reply for that key which raced with an event is not cached.
+    private final Generations<UUID> generations = new Generations<>(GENERATION_COUNTERS);
+    private final SingleFlight<UUID, Optional<OwnerDto>> loads = new SingleFlight<>();
+    private final RequestBatcher<UUID, OwnerDto> batcher;
+
+    public OwnerQueryService(
+            RpcClient rpcClient,
+            Cache<UUID, OwnerDto> ownerCache,
+            ScheduledExecutorService rpcBatchScheduler,
+            @Value("${rpc.batch.max-size:64}") int maxBatchSize,
+            @Value("${rpc.batch.window:PT0.002S}") Duration batchWindow) {
+        this.rpcClient = rpcClient;
+        this.ownerCache = ownerCache;
+        this.batcher = new RequestBatcher<>(maxBatchSize, batchWindow, rpcBatchScheduler, this::getOwners);
+    }
+
+    public CompletableFuture<Optional<OwnerDto>> getOwner(UUID id) {
+        OwnerDto cached = ownerCache.getIfPresent(id);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(Optional.of(cached));
+        }
+
+        return loads.execute(id, this::load);
+    }
+
+    public void evict(UUID id) {
+        generations.advance(id);
+        loads.forget(id);
+        ownerCache.invalidate(id);
+    }
+
+    private CompletableFuture<Optional<OwnerDto>> load(UUID id) {
+        long generation = generations.current(id);
+        return batcher.load(id)
+                .thenApply(owner -> {
+                    owner.ifPresent(dto -> cache(id, dto, generation));
+                    return owner;
+                });
+    }
+
+    private CompletableFuture<Map<UUID, OwnerDto>> getOwners(List<UUID> ids) {
+        return rpcClient.sendAndReceive("owner.exchange", "owner.getBatch", ids, new TypeReference<List<OwnerDto>>() {})
+                .thenApply(response -> response.orElse(List.of()).stream()
+                        .collect(Collectors.toMap(dto -> dto.id, Function.identity())));
+    }
+
+    private void cache(UUID id, OwnerDto owner, long generation) {
+        if (!generations.isCurrent(id, generation)) {
+            return;
+        }
+        ownerCache.put(id, owner);
+        if (!generations.isCurrent(id, generation)) {
+            ownerCache.invalidate(id);
+        }
+    }
+}
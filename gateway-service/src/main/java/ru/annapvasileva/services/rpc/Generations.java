@@ -0,0 +1,39 @@
+package ru.annapvasileva.services.rpc;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Eviction counters for cache keys, so that a load which raced with an eviction of its own key is not cached.
+ * Keys are hashed onto a fixed number of counters: an eviction also keeps the in-flight loads of the few keys
+ * sharing its counter from being cached, which costs them a later miss but bounds the memory.
+ */
+public class Generations<K> {
+    private final AtomicLongArray counters;
+    private final int mask;
+
+    // counters is rounded up to a power of two.
+    public Generations(int counters) {
+        int size = Integer.highestOneBit(Math.max(1, counters - 1)) << 1;
+        this.counters = new AtomicLongArray(size);
+        this.mask = size - 1;
+    }
+
+    // Taken before a load starts.
+    public long current(K key) {
+        return counters.get(indexOf(key));
+    }
+
+    public void advance(K key) {
+        counters.incrementAndGet(indexOf(key));
+    }
+
+    // False once the key was evicted after current(key) returned generation.
+    public boolean isCurrent(K key, long generation) {
+        return counters.get(indexOf(key)) == generation;
+    }
+
+    private int indexOf(K key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
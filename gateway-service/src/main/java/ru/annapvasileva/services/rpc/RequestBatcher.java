@@ -0,0 +1,98 @@
+package ru.annapvasileva.services.rpc;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Collects single-key lookups for a short window (or until maxBatchSize keys are pending)
+ * and serves them with one batched request, fanning the results back out to the individual futures.
+ * A key missing from the batch result completes its future with an empty Optional.
+ */
+public class RequestBatcher<K, V> {
+    private final int maxBatchSize;
+    private final long windowNanos;
+    private final ScheduledExecutorService scheduler;
+    private final Function<List<K>, CompletableFuture<Map<K, V>>> batchLoader;
+
+    private final Object lock = new Object();
+    private Map<K, CompletableFuture<Optional<V>>> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    public RequestBatcher(
+            int maxBatchSize,
+            Duration window,
+            ScheduledExecutorService scheduler,
+            Function<List<K>, CompletableFuture<Map<K, V>>> batchLoader) {
+        this.maxBatchSize = maxBatchSize;
+        this.windowNanos = window.toNanos();
+        this.scheduler = scheduler;
+        this.batchLoader = batchLoader;
+    }
+
+    public CompletableFuture<Optional<V>> load(K key) {
+        CompletableFuture<Optional<V>> result;
+        Map<K, CompletableFuture<Optional<V>>> batch = null;
+
+        synchronized (lock) {
+            result = pending.computeIfAbsent(key, k -> new CompletableFuture<>());
+            if (pending.size() >= maxBatchSize) {
+                batch = takePending();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = scheduler.schedule(this::flush, windowNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        if (batch != null) {
+            dispatch(batch);
+        }
+        return result.copy();
+    }
+
+    private void flush() {
+        Map<K, CompletableFuture<Optional<V>>> batch;
+        synchronized (lock) {
+            batch = takePending();
+        }
+        if (!batch.isEmpty()) {
+            dispatch(batch);
+        }
+    }
+
+    // Must be called while holding the lock.
+    private Map<K, CompletableFuture<Optional<V>>> takePending() {
+        Map<K, CompletableFuture<Optional<V>>> batch = pending;
+        pending = new LinkedHashMap<>();
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    private void dispatch(Map<K, CompletableFuture<Optional<V>>> batch) {
+        CompletableFuture<Map<K, V>> response;
+        try {
+            response = batchLoader.apply(new ArrayList<>(batch.keySet()));
+        } catch (RuntimeException e) {
+            batch.values().forEach(future -> future.completeExceptionally(e));
+            return;
+        }
+
+        response.whenComplete((found, ex) -> batch.forEach((key, future) -> {
+            if (ex != null) {
+                future.completeExceptionally(ex);
+            } else {
+                future.complete(Optional.ofNullable(found.get(key)));
+            }
+        }));
+    }
+}
@@ -0,0 +1,92 @@
+package ru.annapvasileva.services.rpc;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.amqp.core.AmqpReplyTimeoutException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.AsyncRabbitTemplate;
+import org.springframework.stereotype.Service;
+import ru.annapvasileva.util.OperationFailedException;
+import ru.annapvasileva.util.RpcErrors;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Request/reply client for the pet and owner services.
+ * The returned futures are completed by the reply listener, so no thread waits for the broker.
+ * An empty result means the service did not answer within the reply timeout. A reply reporting that the service
+ * itself got no answer from another one completes the future with OperationFailedException.
+ */
+@Service
+public class RpcClient {
+    private final AsyncRabbitTemplate asyncRabbitTemplate;
+    private final ObjectMapper objectMapper;
+
+    public RpcClient(AsyncRabbitTemplate asyncRabbitTemplate, ObjectMapper objectMapper) {
+        this.asyncRabbitTemplate = asyncRabbitTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    public CompletableFuture<Optional<Message>> sendAndReceive(String exchange, String routingKey, Object request) {
+        Message message = new Message(toBody(request), new MessageProperties());
+
+        return asyncRabbitTemplate.sendAndReceive(exchange, routingKey, message)
+                .handle((response, ex) -> {
+                    if (ex == null) {
+                        if (response != null && response.getMessageProperties().getHeader(RpcErrors.HEADER) != null) {
+                            throw new OperationFailedException(routingKey + " failed: "
+                                    + response.getMessageProperties().getHeader(RpcErrors.HEADER));
+                        }
+                        return Optional.ofNullable(response);
+                    }
+                    Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+                    if (cause instanceof AmqpReplyTimeoutException) {
+                        return Optional.empty();
+                    }
+                    throw new CompletionException(cause);
+                });
+    }
+
+    public <T> CompletableFuture<Optional<T>> sendAndReceive(String exchange, String routingKey, Object request, Class<T> responseType) {
+        return sendAndReceive(exchange, routingKey, request)
+                .thenApply(response -> response.map(message -> read(message, responseType)));
+    }
+
+    public <T> CompletableFuture<Optional<T>> sendAndReceive(String exchange, String routingKey, Object request, TypeReference<T> responseType) {
+        return sendAndReceive(exchange, routingKey, request)
+                .thenApply(response -> response.map(message -> read(message, responseType)));
+    }
+
+    // Identifiers travel as their plain string form, everything else as JSON.
+    private byte[] toBody(Object request) {
+        if (request instanceof UUID id) {
+            return id.toString().getBytes();
+        }
+        try {
+            return objectMapper.writeValueAsBytes(request);
+        } catch (IOException e) {
+            throw new RuntimeException("Error processing request", e);
+        }
+    }
+
+    private <T> T read(Message message, Class<T> responseType) {
+        try {
+            return objectMapper.readValue(message.getBody(), responseType);
+        } catch (IOException e) {
+            throw new RuntimeException("Error processing response", e);
+        }
+    }
+
+    private <T> T read(Message message, TypeReference<T> responseType) {
+        try {
+            return objectMapper.readValue(message.getBody(), responseType);
+        } catch (IOException e) {
+            throw new RuntimeException("Error processing response", e);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package ru.annapvasileva.services.rpc;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent loads of the same key: the first caller starts the load,
+ * callers arriving while it is in flight wait for the same result.
+ * Nothing is kept once the load completes, caching is left to the caller.
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    public CompletableFuture<V> execute(K key, Function<K, CompletableFuture<V>> loader) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            // A copy, so that one caller cancelling its future does not affect the others.
+            return existing.copy();
+        }
+
+        try {
+            loader.apply(key).whenComplete((value, ex) -> {
+                inFlight.remove(key, call);
+                if (ex != null) {
+                    call.completeExceptionally(ex);
+                } else {
+                    call.complete(value);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, call);
+            call.completeExceptionally(e);
+        }
+        return call.copy();
+    }
+
+    // Later callers start a fresh load instead of joining one that may return outdated data.
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+}
@@ -3,6 +3,7 @@ package ru.annapvasileva.services.users;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import ru.annapvasileva.persistence.Roles;
 import ru.annapvasileva.persistence.UserEntity;
 
 import java.util.Collection;
@@ -16,10 +17,18 @@ public class CustomUserDetails implements UserDetails {
         this.user = user;
     }
 
+    public UUID getId() {
+        return user.getId();
+    }
+
     public UUID getOwnerId() {
         return user.getOwnerId();
     }
 
+    public Roles getRole() {
+        return user.getRole();
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return List.of(new SimpleGrantedAuthority(user.getRole().name()));
@@ -0,0 +1,33 @@
+package ru.annapvasileva.services.users;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.stereotype.Component;
+import ru.annapvasileva.owners.OwnerEvent;
+
+// The users step of the owner deletion saga, reported back to the owner service once the users are gone.
+@Component
+public class OwnerDeletionListener {
+    private final ObjectMapper objectMapper;
+    private final RabbitTemplate rabbitTemplate;
+    private final UserService userService;
+
+    public OwnerDeletionListener(ObjectMapper objectMapper, RabbitTemplate rabbitTemplate, UserService userService) {
+        this.objectMapper = objectMapper;
+        this.rabbitTemplate = rabbitTemplate;
+        this.userService = userService;
+    }
+
+    // One consumer, like the other event listeners (see spring.rabbitmq.listener.simple.concurrency).
+    @RabbitListener(queues = "user.ownerDeletion.queue", concurrency = "1")
+    public void handleOwnerDeletion(Message message) throws Exception {
+        OwnerEvent event = objectMapper.readValue(message.getBody(), OwnerEvent.class);
+        userService.deleteAllUsersForOwner(event.getOwnerId());
+
+        rabbitTemplate.send("owner.exchange", "owner.deletion.users",
+                new Message(event.getOwnerId().toString().getBytes(), new MessageProperties()));
+    }
+}
@@ -0,0 +1,195 @@
+package ru.annapvasileva.services.users;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+import ru.annapvasileva.persistence.Roles;
+import ru.annapvasileva.persistence.UserEntity;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Issues and verifies signed bearer tokens.
+ * A token carries the user's id, name, role and owner id, so a request costs one HMAC check
+ * (or a cache lookup for a token that was already verified) instead of a database query and a BCrypt round.
+ * Every gateway replica configured with the same secret accepts the same tokens.
+ */
+@Service
+public class TokenService {
+    private static final Logger log = LoggerFactory.getLogger(TokenService.class);
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+    private final Duration ttl;
+    private final Cache<String, VerifiedToken> verified;
+    // Keyed by the signature of the token, which identifies it.
+    private final Cache<String, Instant> revokedTokens;
+    private final Cache<String, Instant> revokedUsers;
+
+    public TokenService(
+            @Value("${auth.token.secret:}") String secret,
+            @Value("${auth.token.ttl:PT1H}") Duration ttl,
+            @Value("${auth.token.cache-size:10000}") long cacheSize,
+            @Value("${auth.token.revocation-cache-size:100000}") long revocationCacheSize) {
+        this.key = new SecretKeySpec(secretBytes(secret), ALGORITHM);
+        this.ttl = ttl;
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(ttl)
+                .build();
+        this.revokedTokens = Caffeine.newBuilder()
+                .maximumSize(revocationCacheSize)
+                .expireAfterWrite(ttl)
+                .build();
+        this.revokedUsers = Caffeine.newBuilder()
+                .maximumSize(revocationCacheSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    public String issue(CustomUserDetails user) {
+        Instant issuedAt = Instant.now();
+        String payload = String.join(".",
+                encode(user.getId().toString()),
+                encode(user.getUsername()),
+                encode(user.getRole().name()),
+                encode(user.getOwnerId().toString()),
+                encode(Long.toString(issuedAt.toEpochMilli())));
+
+        return payload + "." + sign(payload);
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public Optional<Authentication> authenticate(String token) {
+        if (revokedTokens.getIfPresent(tokenId(token)) != null) {
+            return Optional.empty();
+        }
+
+        // The cache entry may outlive the token, which could have been verified just before it expired.
+        VerifiedToken cached = verified.getIfPresent(token);
+        if (cached != null) {
+            if (cached.expiresAt().isBefore(Instant.now())) {
+                verified.invalidate(token);
+                return Optional.empty();
+            }
+            return Optional.of(cached.authentication());
+        }
+
+        Optional<VerifiedToken> verifiedToken = verify(token);
+        verifiedToken.ifPresent(v -> verified.put(token, v));
+        return verifiedToken.map(VerifiedToken::authentication);
+    }
+
+    // Only a valid token is remembered, so callers without one cannot fill the cache.
+    // Returns false if the token was not valid.
+    public boolean revoke(String token) {
+        if (authenticate(token).isEmpty()) {
+            return false;
+        }
+        verified.invalidate(token);
+        revokedTokens.put(tokenId(token), Instant.now());
+        return true;
+    }
+
+    // Rejects every token issued to the user so far, e.g. after the user was changed or deleted.
+    public void revokeAll(String username) {
+        revokedUsers.put(username, Instant.now());
+        verified.asMap().values().removeIf(v -> v.authentication().getName().equals(username));
+    }
+
+    private Optional<VerifiedToken> verify(String token) {
+        int signatureStart = token.lastIndexOf('.');
+        if (signatureStart < 0) {
+            return Optional.empty();
+        }
+        String payload = token.substring(0, signatureStart);
+        byte[] signature = token.substring(signatureStart + 1).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(signature, sign(payload).getBytes(StandardCharsets.US_ASCII))) {
+            return Optional.empty();
+        }
+
+        String[] parts = payload.split("\\.");
+        if (parts.length != 5) {
+            return Optional.empty();
+        }
+        try {
+            String username = decode(parts[1]);
+            Instant issuedAt = Instant.ofEpochMilli(Long.parseLong(decode(parts[4])));
+            Instant expiresAt = issuedAt.plus(ttl);
+            if (expiresAt.isBefore(Instant.now())) {
+                return Optional.empty();
+            }
+            Instant revokedAt = revokedUsers.getIfPresent(username);
+            if (revokedAt != null && !issuedAt.isAfter(revokedAt)) {
+                return Optional.empty();
+            }
+
+            UserEntity user = new UserEntity();
+            user.setId(UUID.fromString(decode(parts[0])));
+            user.setUsername(username);
+            user.setRole(Roles.valueOf(decode(parts[2])));
+            user.setOwnerId(UUID.fromString(decode(parts[3])));
+            CustomUserDetails principal = new CustomUserDetails(user);
+
+            return Optional.of(new VerifiedToken(
+                    UsernamePasswordAuthenticationToken.authenticated(principal, null, principal.getAuthorities()),
+                    expiresAt));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static String tokenId(String token) {
+        return token.substring(token.lastIndexOf('.') + 1);
+    }
+
+    private record VerifiedToken(Authentication authentication, Instant expiresAt) {
+    }
+
+    private String sign(String payload) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(mac.doFinal(payload.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot sign token", e);
+        }
+    }
+
+    private static String encode(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String value) {
+        return new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] secretBytes(String secret) {
+        if (!secret.isBlank()) {
+            return secret.getBytes(StandardCharsets.UTF_8);
+        }
+        log.warn("auth.token.secret is not set, tokens will only be accepted by this gateway instance");
+        byte[] random = new byte[32];
+        new SecureRandom().nextBytes(random);
+        return random;
+    }
+}
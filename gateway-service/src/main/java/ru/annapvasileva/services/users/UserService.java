@@ -1,16 +1,15 @@
 package ru.annapvasileva.services.users;
 
-import org.springframework.amqp.core.Message;
-import org.springframework.amqp.core.MessageProperties;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.annapvasileva.persistence.DeletingOwnerRepository;
 import ru.annapvasileva.persistence.Roles;
 import ru.annapvasileva.persistence.UserEntity;
 import ru.annapvasileva.persistence.UserRepository;
+import ru.annapvasileva.services.owners.OwnerQueryService;
 
 import java.util.Optional;
 import java.util.UUID;
@@ -20,26 +19,27 @@ import java.util.UUID;
 public class UserService {
 
     private final UserRepository userRepository;
-    private final RabbitTemplate rabbitTemplate;
+    private final DeletingOwnerRepository deletingOwnerRepository;
+    private final OwnerQueryService ownerQueryService;
     private final PasswordEncoder passwordEncoder;
+    private final TokenService tokenService;
 
     public UserService(
             UserRepository userRepository,
-            RabbitTemplate rabbitTemplate,
-            PasswordEncoder passwordEncoder) {
+            DeletingOwnerRepository deletingOwnerRepository,
+            OwnerQueryService ownerQueryService,
+            PasswordEncoder passwordEncoder,
+            TokenService tokenService) {
         this.userRepository = userRepository;
-        this.rabbitTemplate = rabbitTemplate;
+        this.deletingOwnerRepository = deletingOwnerRepository;
+        this.ownerQueryService = ownerQueryService;
         this.passwordEncoder = passwordEncoder;
+        this.tokenService = tokenService;
     }
 
+    // The owner may come from the cache, so the fence is checked as well.
     public Optional<UserDto> createUser(String username, String password, Roles role, UUID ownerId) {
-        String correlationId = UUID.randomUUID().toString();
-        MessageProperties properties = new MessageProperties();
-        properties.setCorrelationId(correlationId);
-        properties.setReplyTo("owner.get.reply.queue");
-        Message message = new Message(ownerId.toString().getBytes(), properties);
-        Message response = rabbitTemplate.sendAndReceive("owner.exchange", "owner.get", message);
-        if (response == null) {
+        if (ownerQueryService.getOwner(ownerId).join().isEmpty() || !deletingOwnerRepository.lockNotDeleting(ownerId)) {
             return Optional.empty();
         }
         if (userRepository.findByUsername(username).isPresent()) {
@@ -70,14 +70,23 @@ public class UserService {
     }
 
     public void deleteUser(UUID id) {
+        userRepository.findById(id)
+                .ifPresent(user -> tokenService.revokeAll(user.getUsername()));
         userRepository.deleteById(id);
     }
 
     public void deleteUserByUsername(String username) {
+        tokenService.revokeAll(username);
         userRepository.deleteByUsername(username);
     }
 
+    // The users step of the owner deletion. The owner is marked first, in the same transaction,
+    // so no user can be added to it once its users are gone.
     public void deleteAllUsersForOwner(UUID ownerId) {
+        deletingOwnerRepository.markDeleting(ownerId);
+        for (UserEntity user : userRepository.findAllByOwnerId(ownerId)) {
+            tokenService.revokeAll(user.getUsername());
+        }
         userRepository.deleteByOwnerId(ownerId);
     }
 
@@ -88,16 +97,12 @@ public class UserService {
         }
         UserEntity user = userOpt.get();
 
-        String correlationId = UUID.randomUUID().toString();
-        MessageProperties properties = new MessageProperties();
-        properties.setCorrelationId(correlationId);
-        properties.setReplyTo("owner.get.reply.queue");
-        Message message = new Message(userDto.getOwnerId().toString().getBytes(), properties);
-        Message response = rabbitTemplate.sendAndReceive("owner.exchange", "owner.get", message);
-        if (response == null) {
+        if (ownerQueryService.getOwner(userDto.getOwnerId()).join().isEmpty()
+                || !deletingOwnerRepository.lockNotDeleting(userDto.getOwnerId())) {
             return Optional.empty();
         }
 
+        tokenService.revokeAll(user.getUsername());
         user.setUsername(userDto.getUsername());
         user.setPassword(passwordEncoder.encode(userDto.getPassword()));
         user.setRole(userDto.getRole());
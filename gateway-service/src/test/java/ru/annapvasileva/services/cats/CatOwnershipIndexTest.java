@@ -0,0 +1,113 @@
+package ru.annapvasileva.services.cats;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CatOwnershipIndexTest {
+
+    @Test
+    void putOverwritesAndPutIfAbsentKeepsTheExistingOwner() {
+        CatOwnershipIndex index = new CatOwnershipIndex(100);
+        UUID cat = UUID.randomUUID();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+
+        index.putIfAbsent(cat, first);
+        index.putIfAbsent(cat, second);
+        assertThat(index.getOwner(cat)).contains(first);
+
+        index.put(cat, second);
+        assertThat(index.getOwner(cat)).contains(second);
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    void unknownCatHasNoOwner() {
+        CatOwnershipIndex index = new CatOwnershipIndex(100);
+
+        assertThat(index.getOwner(UUID.randomUUID())).isEmpty();
+    }
+
+    @Test
+    void keepsEveryEntryAcrossResizesAndRemovals() {
+        CatOwnershipIndex index = new CatOwnershipIndex(1_000_000);
+        List<UUID> cats = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            UUID cat = UUID.randomUUID();
+            cats.add(cat);
+            index.put(cat, ownerOf(cat));
+        }
+
+        // Removing every other entry shifts the remaining ones back along their probe sequences.
+        for (int i = 0; i < cats.size(); i += 2) {
+            index.remove(cats.get(i));
+        }
+
+        assertThat(index.size()).isEqualTo(10_000);
+        for (int i = 0; i < cats.size(); i++) {
+            UUID cat = cats.get(i);
+            if (i % 2 == 0) {
+                assertThat(index.getOwner(cat)).isEmpty();
+            } else {
+                assertThat(index.getOwner(cat)).contains(ownerOf(cat));
+            }
+        }
+    }
+
+    @Test
+    void stopsGrowingAtMaxEntries() {
+        CatOwnershipIndex index = new CatOwnershipIndex(2);
+        UUID third = UUID.randomUUID();
+
+        index.put(UUID.randomUUID(), UUID.randomUUID());
+        index.put(UUID.randomUUID(), UUID.randomUUID());
+        index.put(third, UUID.randomUUID());
+
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.getOwner(third)).isEmpty();
+    }
+
+    @Test
+    void readersNeverFailWhileTheTableResizes() throws Exception {
+        CatOwnershipIndex index = new CatOwnershipIndex(1_000_000);
+        List<UUID> cats = new ArrayList<>();
+        for (int i = 0; i < 200_000; i++) {
+            cats.add(UUID.randomUUID());
+        }
+        AtomicBoolean done = new AtomicBoolean();
+
+        List<CompletableFuture<Void>> readers = new ArrayList<>();
+        for (int r = 0; r < 4; r++) {
+            readers.add(CompletableFuture.runAsync(() -> {
+                int i = 0;
+                while (!done.get()) {
+                    UUID cat = cats.get(i++ % cats.size());
+                    Optional<UUID> owner = index.getOwner(cat);
+                    owner.ifPresent(o -> assertThat(o).isEqualTo(ownerOf(cat)));
+                }
+            }));
+        }
+        try {
+            for (UUID cat : cats) {
+                index.put(cat, ownerOf(cat));
+            }
+        } finally {
+            done.set(true);
+        }
+
+        CompletableFuture.allOf(readers.toArray(CompletableFuture[]::new)).get();
+        assertThat(index.size()).isEqualTo(cats.size());
+    }
+
+    private static UUID ownerOf(UUID cat) {
+        return new UUID(cat.getLeastSignificantBits(), cat.getMostSignificantBits());
+    }
+}
@@ -0,0 +1,36 @@
+package ru.annapvasileva.services.rpc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GenerationsTest {
+
+    @Test
+    void evictionOutdatesLoadsOfTheSameKey() {
+        Generations<UUID> generations = new Generations<>(1 << 12);
+        UUID id = UUID.randomUUID();
+
+        long generation = generations.current(id);
+        assertThat(generations.isCurrent(id, generation)).isTrue();
+
+        generations.advance(id);
+        assertThat(generations.isCurrent(id, generation)).isFalse();
+        assertThat(generations.isCurrent(id, generations.current(id))).isTrue();
+    }
+
+    @Test
+    void evictionKeepsLoadsOfOtherKeysCurrent() {
+        Generations<Integer> generations = new Generations<>(16);
+        long generation = generations.current(1);
+
+        // Keys 2..15 use other counters than key 1.
+        for (int key = 2; key < 16; key++) {
+            generations.advance(key);
+        }
+
+        assertThat(generations.isCurrent(1, generation)).isTrue();
+    }
+}
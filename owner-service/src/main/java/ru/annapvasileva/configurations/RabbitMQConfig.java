@@ -1,5 +1,6 @@
 package ru.annapvasileva.configurations;
 
+import org.springframework.amqp.core.AnonymousQueue;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.core.Queue;
@@ -27,28 +28,35 @@ public class RabbitMQConfig {
         return new Queue(name, true, false, false);
     }
 
+    // Shared by all instances: every step report of the owner deletion saga is handled once.
     @Bean
-    public Queue catDeleteByOwnerQueue() {
-        return queue("cat.deleteByOwner.queue");
+    public Queue ownerDeletionStepQueue() {
+        return queue("owner.deletionStep.queue");
+    }
+
+    private Binding binding(Queue queue, TopicExchange exchange, String routingKey) {
+        return BindingBuilder.bind(queue).to(exchange).with(routingKey);
     }
 
     @Bean
-    public Queue catDeleteByOwnerReplyQueue() {
-        return queue("cat.deleteByOwner.reply.queue");
+    public Binding ownerDeletionStepBinding() {
+        return binding(ownerDeletionStepQueue(), ownerExchange(), "owner.deletion.*");
     }
 
-    private Binding binding(Queue queue, TopicExchange exchange, String routingKey) {
-        return BindingBuilder.bind(queue).to(exchange).with(routingKey);
+    // Every instance evicts its own second-level cache entries, also for changes made by other instances.
+    @Bean
+    public Queue ownerCacheEventQueue() {
+        return new AnonymousQueue();
     }
 
     @Bean
-    public Binding catDeleteByOwnerBinding() {
-        return binding(catDeleteByOwnerQueue(), catExchange(), "cat.deleteByOwner");
+    public Binding ownerCacheUpdatedBinding() {
+        return binding(ownerCacheEventQueue(), ownerExchange(), "owner.event.updated");
     }
 
     @Bean
-    public Binding catDeleteByOwnerReplyBinding() {
-        return binding(catDeleteByOwnerReplyQueue(), catExchange(), "cat.deleteByOwner.reply");
+    public Binding ownerCacheDeletedBinding() {
+        return binding(ownerCacheEventQueue(), ownerExchange(), "owner.event.deleted");
     }
 }
 
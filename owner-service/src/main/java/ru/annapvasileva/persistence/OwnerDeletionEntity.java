@@ -0,0 +1,40 @@
+package ru.annapvasileva.persistence;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import ru.annapvasileva.owners.OwnerDeletionStatus;
+
+import java.time.Instant;
+import java.util.UUID;
+
+// State of the owner deletion saga. Kept after completion, so the outcome stays observable once the owner is gone.
+@Getter
+@Setter
+@Entity
+@Table(name = "owner_deletions")
+@NoArgsConstructor()
+@AllArgsConstructor()
+public class OwnerDeletionEntity {
+    @Id
+    @Column(name = "owner_id", nullable = false)
+    private UUID ownerId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private OwnerDeletionStatus status;
+
+    @Column(name = "cats_deleted", nullable = false)
+    private boolean catsDeleted;
+
+    @Column(name = "users_deleted", nullable = false)
+    private boolean usersDeleted;
+
+    @Column(name = "requested_at", nullable = false)
+    private Instant requestedAt;
+
+    @Column(name = "completed_at")
+    private Instant completedAt;
+}
@@ -0,0 +1,25 @@
+package ru.annapvasileva.persistence;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface OwnerDeletionRepository extends JpaRepository<OwnerDeletionEntity, UUID> {
+    // Steps reported concurrently by different services are applied one after the other.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select d from OwnerDeletionEntity d where d.ownerId = :ownerId")
+    Optional<OwnerDeletionEntity> findForUpdate(UUID ownerId);
+
+    // Starts the saga unless it was started already, in one statement, so concurrent requests start it once.
+    // Returns the number of rows inserted.
+    @Modifying
+    @Query(value = "insert into owner_deletions (owner_id, status, cats_deleted, users_deleted, requested_at) "
+            + "values (:ownerId, :status, false, false, :requestedAt) on conflict (owner_id) do nothing", nativeQuery = true)
+    int insertIfAbsent(UUID ownerId, String status, Instant requestedAt);
+}
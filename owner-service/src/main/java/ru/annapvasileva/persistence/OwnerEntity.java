@@ -5,6 +5,9 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import ru.annapvasileva.util.TimeOrderedUuid;
 
 import java.time.LocalDate;
 import java.util.UUID;
@@ -12,12 +15,14 @@ import java.util.UUID;
 @Getter
 @Setter
 @Entity
-@Table(name = "owners")
+@Table(name = "owners", indexes = @Index(name = "idx_owners_last_name_id", columnList = "last_name, id")) // keyset listing by last name
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "owners") // only used when the second-level cache is enabled
 @NoArgsConstructor() // Lombok создаст protected конструктор
 @AllArgsConstructor()
 public class OwnerEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @TimeOrderedUuid
     private UUID id;
 
     @Column(name="first_name", nullable=false)
@@ -28,4 +33,9 @@ public class OwnerEntity {
 
     @Column(name = "date_of_birth", nullable = false)
     private LocalDate birthDate;
+
+    // An owner read from a stale second-level cache entry cannot be written back over a newer row.
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
 }
@@ -1,7 +1,27 @@
 package ru.annapvasileva.persistence;
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
-public interface OwnerRepository extends JpaRepository<OwnerEntity, UUID> {}
+public interface OwnerRepository extends JpaRepository<OwnerEntity, UUID>, JpaSpecificationExecutor<OwnerEntity> {
+    // Planner statistics instead of count(*): refreshed by autovacuum/ANALYZE, so only approximately right.
+    @Query(value = "select greatest(reltuples, 0)::bigint from pg_class where oid = 'owners'::regclass", nativeQuery = true)
+    long estimateCount();
+
+    // Reads the row from the database, not the second-level cache, and holds it until the transaction ends.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select o from OwnerEntity o where o.id = :id")
+    Optional<OwnerEntity> findForUpdate(UUID id);
+
+    // Owners that are being deleted are left out.
+    @Query("select o from OwnerEntity o where o.id in :ids and not exists (select d from OwnerDeletionEntity d where d.ownerId = o.id)")
+    List<OwnerEntity> findAllActiveById(Collection<UUID> ids);
+}
@@ -0,0 +1,29 @@
+package ru.annapvasileva.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+import ru.annapvasileva.owners.OwnerEvent;
+import ru.annapvasileva.persistence.OwnerEntity;
+
+// Drops an owner from the second-level cache of this instance once any instance committed a change to it.
+// A no-op while the cache is disabled.
+@Component
+public class OwnerCacheEvictionListener {
+    private final ObjectMapper objectMapper;
+    private final EntityManagerFactory entityManagerFactory;
+
+    public OwnerCacheEvictionListener(ObjectMapper objectMapper, EntityManagerFactory entityManagerFactory) {
+        this.objectMapper = objectMapper;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    // One consumer, like the other event listeners (see spring.rabbitmq.listener.simple.concurrency).
+    @RabbitListener(queues = "#{ownerCacheEventQueue.name}", concurrency = "1")
+    public void handleOwnerEvent(Message message) throws Exception {
+        OwnerEvent event = objectMapper.readValue(message.getBody(), OwnerEvent.class);
+        entityManagerFactory.getCache().evict(OwnerEntity.class, event.getOwnerId());
+    }
+}
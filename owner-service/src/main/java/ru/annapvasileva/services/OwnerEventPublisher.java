@@ -0,0 +1,35 @@
+package ru.annapvasileva.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+import ru.annapvasileva.infra.Outbox;
+import ru.annapvasileva.owners.OwnerEvent;
+import ru.annapvasileva.owners.OwnerEventType;
+
+import java.util.UUID;
+
+@Component
+public class OwnerEventPublisher {
+    private final Outbox outbox;
+    private final ObjectMapper objectMapper;
+
+    public OwnerEventPublisher(Outbox outbox, ObjectMapper objectMapper) {
+        this.outbox = outbox;
+        this.objectMapper = objectMapper;
+    }
+
+    // Written to the outbox in the caller's transaction; the outbox relay sends it once committed.
+    public void publish(OwnerEventType type, UUID ownerId) {
+        String routingKey = "owner.event." + type.name().toLowerCase();
+        outbox.append("owner.exchange", routingKey, toBytes(new OwnerEvent(type, ownerId)));
+    }
+
+    private byte[] toBytes(OwnerEvent event) {
+        try {
+            return objectMapper.writeValueAsBytes(event);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Error serializing event", e);
+        }
+    }
+}
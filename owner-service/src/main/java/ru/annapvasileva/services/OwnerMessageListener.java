@@ -12,8 +12,12 @@ import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Component;
 import ru.annapvasileva.cats.CatDto;
 import ru.annapvasileva.owners.CreateOwnerRequest;
+import ru.annapvasileva.owners.OwnerDeletionDto;
 import ru.annapvasileva.owners.OwnerDto;
+import ru.annapvasileva.util.CursorPage;
+import ru.annapvasileva.util.ScrollRequest;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
@@ -53,6 +57,15 @@ public class OwnerMessageListener {
         }
     }
 
+    // Always replies, missing ids are simply left out of the list.
+    @RabbitListener(queues = "owner.getBatch.queue")
+    public void handleGetOwnerBatch(Message message) throws Exception {
+        List<UUID> ownerIds = objectMapper.readValue(message.getBody(), new TypeReference<>() {});
+        List<OwnerDto> owners = ownerService.getOwners(ownerIds);
+
+        reply(message, objectMapper.writeValueAsBytes(owners));
+    }
+
     @RabbitListener(queues = "owner.getAll.queue")
     public void handleGetAllOwners(Message message) throws Exception {
         Map<String, Object> params = objectMapper.readValue(message.getBody(), new TypeReference<>() {});
@@ -67,15 +80,25 @@ public class OwnerMessageListener {
         reply(message, objectMapper.writeValueAsBytes(owners));
     }
 
+    // Replies with null for an unknown sort property or a malformed cursor.
+    @RabbitListener(queues = "owner.scroll.queue")
+    public void handleScrollOwners(Message message) throws Exception {
+        ScrollRequest request = objectMapper.readValue(message.getBody(), ScrollRequest.class);
+        CursorPage<OwnerDto> owners;
+        try {
+            owners = ownerService.scrollOwners(request);
+        } catch (IllegalArgumentException e) {
+            owners = null;
+        }
+
+        reply(message, objectMapper.writeValueAsBytes(owners));
+    }
+
     @RabbitListener(queues = "owner.changeForPet.queue")
     public void handleChangeForPet(Message message) throws Exception {
         Map<String, UUID> ids = objectMapper.readValue(message.getBody(), new TypeReference<>() {});
         // Get the cat if it exists
-        String correlationId = UUID.randomUUID().toString();
-        MessageProperties properties = new MessageProperties();
-        properties.setCorrelationId(correlationId);
-        properties.setReplyTo("cat.get.reply.queue");
-        Message getCatMessage = new Message(ids.get("petId").toString().getBytes(), properties);
+        Message getCatMessage = new Message(ids.get("petId").toString().getBytes(), new MessageProperties());
         Message response = rabbitTemplate.sendAndReceive("cat.exchange", "cat.get", getCatMessage);
         if (response == null) {
             reply(message, objectMapper.writeValueAsBytes(false));
@@ -85,11 +108,7 @@ public class OwnerMessageListener {
 
         // Updating the cat
         catDto.ownerId = ids.get("ownerId");
-        correlationId = UUID.randomUUID().toString();
-        MessageProperties properties2 = new MessageProperties();
-        properties2.setCorrelationId(correlationId);
-        properties2.setReplyTo("cat.update.reply.queue");
-        Message updateCatMessage = new Message(ids.get("petId").toString().getBytes(), properties2);
+        Message updateCatMessage = new Message(objectMapper.writeValueAsBytes(catDto), new MessageProperties());
         Message response2 = rabbitTemplate.sendAndReceive("cat.exchange", "cat.update", updateCatMessage);
         reply(message, objectMapper.writeValueAsBytes(response2 != null));
     }
@@ -98,21 +117,35 @@ public class OwnerMessageListener {
     public void handleDeletePet(Message message) throws Exception {
         Map<String, UUID> ids = objectMapper.readValue(message.getBody(), new TypeReference<>() {});
         // Deleting the cat
-        String correlationId = UUID.randomUUID().toString();
-        MessageProperties properties = new MessageProperties();
-        properties.setCorrelationId(correlationId);
-        properties.setReplyTo("cat.delete.reply.queue");
-        Message deleteCatMessage = new Message(ids.get("petId").toString().getBytes(), properties);
+        Message deleteCatMessage = new Message(ids.get("petId").toString().getBytes(), new MessageProperties());
         Message response = rabbitTemplate.sendAndReceive("cat.exchange", "cat.delete", deleteCatMessage);
         reply(message, objectMapper.writeValueAsBytes(response != null));
     }
 
+    // Replies as soon as the deletion is started, with false for an unknown owner.
     @RabbitListener(queues = "owner.delete.queue")
     public void handleDeleteOwner(Message message) throws Exception {
         UUID owner = UUID.fromString(new String(message.getBody()));
-        ownerService.deleteOwner(owner);
+        boolean found = ownerService.requestDeletion(owner);
+
+        reply(message, objectMapper.writeValueAsBytes(found));
+    }
+
+    @RabbitListener(queues = "owner.getDeletion.queue")
+    public void handleGetDeletion(Message message) throws Exception {
+        UUID ownerId = UUID.fromString(new String(message.getBody()));
+        Optional<OwnerDeletionDto> deletion = ownerService.getDeletion(ownerId);
+
+        reply(message, objectMapper.writeValueAsBytes(deletion.orElse(null)));
+    }
 
-        reply(message, new byte[0]);
+    // Saga steps reported by the pet service ("owner.deletion.cats") and the gateway ("owner.deletion.users").
+    // One consumer, unlike the RPC queues; the steps themselves are serialised by findForUpdate.
+    @RabbitListener(queues = "owner.deletionStep.queue", concurrency = "1")
+    public void handleDeletionStep(Message message) {
+        UUID ownerId = UUID.fromString(new String(message.getBody()));
+        String routingKey = message.getMessageProperties().getReceivedRoutingKey();
+        ownerService.completeDeletionStep(ownerId, routingKey.substring(routingKey.lastIndexOf('.') + 1));
     }
 
     @RabbitListener(queues = "owner.update.queue")
@@ -1,30 +1,55 @@
 package ru.annapvasileva.services;
 
-import org.springframework.amqp.core.Message;
-import org.springframework.amqp.core.MessageProperties;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.annapvasileva.owners.OwnerDeletionDto;
+import ru.annapvasileva.owners.OwnerDeletionStatus;
 import ru.annapvasileva.owners.OwnerDto;
+import ru.annapvasileva.owners.OwnerEventType;
+import ru.annapvasileva.persistence.OwnerDeletionEntity;
+import ru.annapvasileva.persistence.OwnerDeletionRepository;
 import ru.annapvasileva.persistence.OwnerEntity;
 import ru.annapvasileva.persistence.OwnerRepository;
+import ru.annapvasileva.util.CursorPage;
+import ru.annapvasileva.util.ScrollCursor;
+import ru.annapvasileva.util.ScrollRequest;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
 
 @Service
 @Transactional
 public class OwnerService {
+    // Properties a keyset listing may be ordered by (all non-null), with the parsers for their cursor values.
+    private static final Map<String, Function<String, Object>> SCROLL_KEYS = Map.of(
+            "id", UUID::fromString,
+            "firstName", value -> value,
+            "lastName", value -> value,
+            "birthDate", LocalDate::parse);
 
     private final OwnerRepository ownerRepository;
-    private final RabbitTemplate rabbitTemplate;
+    private final OwnerDeletionRepository ownerDeletionRepository;
+    private final OwnerEventPublisher ownerEventPublisher;
 
-    public OwnerService(OwnerRepository ownerRepository, RabbitTemplate rabbitTemplate) {
+    public OwnerService(
+            OwnerRepository ownerRepository,
+            OwnerDeletionRepository ownerDeletionRepository,
+            OwnerEventPublisher ownerEventPublisher) {
         this.ownerRepository = ownerRepository;
-        this.rabbitTemplate = rabbitTemplate;
+        this.ownerDeletionRepository = ownerDeletionRepository;
+        this.ownerEventPublisher = ownerEventPublisher;
     }
 
     public Optional<OwnerDto> createOwner(String firstName, String lastName, LocalDate dateOfBirth) {
@@ -34,6 +59,7 @@ public class OwnerService {
         ownerEntity.setBirthDate(dateOfBirth);
 
         OwnerEntity savedOwner = ownerRepository.save(ownerEntity);
+        ownerEventPublisher.publish(OwnerEventType.CREATED, savedOwner.getId());
 
         return Optional.of(convertToDto(savedOwner));
     }
@@ -41,38 +67,102 @@ public class OwnerService {
     @Transactional(readOnly = true)
     public Optional<OwnerDto> getOwner(UUID id) {
         return ownerRepository.findById(id)
+                .filter(owner -> !ownerDeletionRepository.existsById(id))
                 .map(this::convertToDto);
     }
 
+    @Transactional(readOnly = true)
+    public List<OwnerDto> getOwners(List<UUID> ids) {
+        return ownerRepository.findAllActiveById(ids).stream()
+                .map(this::convertToDto)
+                .toList();
+    }
+
     @Transactional(readOnly = true)
     public Page<OwnerDto> getAllOwners(Pageable pageable) {
-        return ownerRepository.findAll(pageable)
+        return ownerRepository.findAll(notBeingDeleted(), pageable)
                 .map(this::convertToDto);
     }
 
-    public void deleteOwner(UUID id) {
-        Optional<OwnerEntity> ownerOpt = ownerRepository.findById(id);
-        if (ownerOpt.isEmpty()) {
-            return;
+    // Keyset listing: the cursor holds the last (sort key, id), so every slice costs one index range scan and no count.
+    @Transactional(readOnly = true)
+    public CursorPage<OwnerDto> scrollOwners(ScrollRequest request) {
+        ScrollCursor cursor = request.getCursor() == null
+                ? ScrollCursor.first(request.getSortBy(), request.getSortDir())
+                : ScrollCursor.decode(request.getCursor());
+        if (!SCROLL_KEYS.containsKey(cursor.getSortBy())) {
+            throw new IllegalArgumentException("Cannot sort owners by " + cursor.getSortBy());
+        }
+        ScrollPosition position = cursor.toPosition(SCROLL_KEYS);
+
+        Window<OwnerEntity> window = ownerRepository.findBy(notBeingDeleted(), query -> query
+                .sortBy(cursor.toSort())
+                .limit(request.getSize())
+                .scroll(position));
+
+        String nextCursor = null;
+        if (window.hasNext() && !window.isEmpty()) {
+            ScrollPosition last = window.positionAt(window.size() - 1);
+            nextCursor = ScrollCursor.after(cursor.getSortBy(), cursor.getSortDir(), last).encode();
+        }
+        Long approximateTotal = request.isWithTotal() ? ownerRepository.estimateCount() : null;
+
+        return new CursorPage<>(
+                window.getContent().stream().map(this::convertToDto).toList(),
+                nextCursor,
+                approximateTotal);
+    }
+
+    // Starts the deletion saga and returns at once: the pet service deletes the cats and the gateway the users
+    // on DELETION_REQUESTED, each reports back through completeDeletionStep, and the owner goes after both.
+    // Returns false if there is no such owner; asking again for an owner that is being deleted changes nothing.
+    public boolean requestDeletion(UUID id) {
+        if (!ownerRepository.existsById(id)) {
+            return false;
         }
-        OwnerEntity owner = ownerOpt.get();
-
-        // Deleting the pets
-        String correlationId = UUID.randomUUID().toString();
-        MessageProperties properties = new MessageProperties();
-        properties.setCorrelationId(correlationId);
-        properties.setReplyTo("cat.deleteByOwner.reply.queue");
-        Message deleteCatsMessage = new Message(id.toString().getBytes(), properties);
-        Message response = rabbitTemplate.sendAndReceive("cat.exchange", "cat.deleteByOwner", deleteCatsMessage);
-        if (response == null)
+
+        if (ownerDeletionRepository.insertIfAbsent(id, OwnerDeletionStatus.IN_PROGRESS.name(), Instant.now()) == 1) {
+            ownerEventPublisher.publish(OwnerEventType.DELETION_REQUESTED, id);
+        }
+        return true;
+    }
+
+    // Idempotent, since a step may be reported more than once.
+    public void completeDeletionStep(UUID ownerId, String step) {
+        Optional<OwnerDeletionEntity> deletionOpt = ownerDeletionRepository.findForUpdate(ownerId);
+        if (deletionOpt.isEmpty() || deletionOpt.get().getStatus() == OwnerDeletionStatus.COMPLETED) {
             return;
+        }
+        OwnerDeletionEntity deletion = deletionOpt.get();
+
+        switch (step) {
+            case "cats" -> deletion.setCatsDeleted(true);
+            case "users" -> deletion.setUsersDeleted(true);
+            default -> throw new IllegalArgumentException("Unknown owner deletion step " + step);
+        }
+        if (deletion.isCatsDeleted() && deletion.isUsersDeleted()) {
+            ownerRepository.findForUpdate(ownerId).ifPresent(ownerRepository::delete);
+            deletion.setStatus(OwnerDeletionStatus.COMPLETED);
+            deletion.setCompletedAt(Instant.now());
+            ownerEventPublisher.publish(OwnerEventType.DELETED, ownerId);
+        }
+    }
 
-        ownerRepository.delete(owner);
+    @Transactional(readOnly = true)
+    public Optional<OwnerDeletionDto> getDeletion(UUID ownerId) {
+        return ownerDeletionRepository.findById(ownerId)
+                .map(deletion -> new OwnerDeletionDto(
+                        deletion.getOwnerId(),
+                        deletion.getStatus(),
+                        deletion.isCatsDeleted(),
+                        deletion.isUsersDeleted(),
+                        deletion.getRequestedAt(),
+                        deletion.getCompletedAt()));
     }
 
     public Optional<OwnerDto> updateOwner(OwnerDto ownerDto) {
-        Optional<OwnerEntity> existingOwnerOpt = ownerRepository.findById(ownerDto.id);
-        if (existingOwnerOpt.isEmpty()) {
+        Optional<OwnerEntity> existingOwnerOpt = ownerRepository.findForUpdate(ownerDto.id);
+        if (existingOwnerOpt.isEmpty() || ownerDeletionRepository.existsById(ownerDto.id)) {
             return Optional.empty();
         }
         OwnerEntity existingOwner = existingOwnerOpt.get();
@@ -82,10 +172,22 @@ public class OwnerService {
         existingOwner.setBirthDate(ownerDto.birthDate);
 
         OwnerEntity updatedOwner = ownerRepository.save(existingOwner);
+        ownerEventPublisher.publish(OwnerEventType.UPDATED, updatedOwner.getId());
 
         return Optional.of(convertToDto(updatedOwner));
     }
 
+    // Owners that are being deleted are left out of listings, like in OwnerRepository.findAllActiveById.
+    private static Specification<OwnerEntity> notBeingDeleted() {
+        return (root, query, cb) -> {
+            Subquery<UUID> deletion = query.subquery(UUID.class);
+            Root<OwnerDeletionEntity> deletionRoot = deletion.from(OwnerDeletionEntity.class);
+            deletion.select(deletionRoot.get("ownerId"))
+                    .where(cb.equal(deletionRoot.get("ownerId"), root.get("id")));
+            return cb.not(cb.exists(deletion));
+        };
+    }
+
     private OwnerDto convertToDto(OwnerEntity ownerEntity) {
         return new OwnerDto(
                 ownerEntity.getId(),
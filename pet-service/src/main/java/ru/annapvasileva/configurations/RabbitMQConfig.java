@@ -1,5 +1,9 @@
 package ru.annapvasileva.configurations;
 
+import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.core.TopicExchange;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -8,10 +12,85 @@ import org.springframework.context.annotation.Configuration;
 public class RabbitMQConfig {
 
     public static final String CAT_EXCHANGE = "cat.exchange";
+    public static final String OWNER_EXCHANGE = "owner.exchange";
 
     @Bean
     public TopicExchange catExchange() {
         return new TopicExchange(CAT_EXCHANGE);
     }
-}
 
+    @Bean
+    public TopicExchange ownerExchange() {
+        return new TopicExchange(OWNER_EXCHANGE);
+    }
+
+    // Every pet service instance keeps its own friend graph, so it gets its own copy of the events.
+    @Bean
+    public Queue friendGraphEventQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding friendshipAddedBinding() {
+        return BindingBuilder.bind(friendGraphEventQueue()).to(catExchange()).with("cat.event.friendship_added");
+    }
+
+    @Bean
+    public Binding friendshipRemovedBinding() {
+        return BindingBuilder.bind(friendGraphEventQueue()).to(catExchange()).with("cat.event.friendship_removed");
+    }
+
+    @Bean
+    public Binding catDeletedBinding() {
+        return BindingBuilder.bind(friendGraphEventQueue()).to(catExchange()).with("cat.event.deleted");
+    }
+
+    // Every instance evicts its own second-level cache entries, also for changes made by other instances.
+    @Bean
+    public Queue catCacheEventQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding catCacheUpdatedBinding() {
+        return BindingBuilder.bind(catCacheEventQueue()).to(catExchange()).with("cat.event.updated");
+    }
+
+    @Bean
+    public Binding catCacheDeletedBinding() {
+        return BindingBuilder.bind(catCacheEventQueue()).to(catExchange()).with("cat.event.deleted");
+    }
+
+    // Every instance keeps its own set of known owners.
+    @Bean
+    public Queue ownerEventQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding ownerCreatedBinding() {
+        return BindingBuilder.bind(ownerEventQueue()).to(ownerExchange()).with("owner.event.created");
+    }
+
+    @Bean
+    public Binding ownerDeletionRequestedBinding() {
+        return BindingBuilder.bind(ownerEventQueue()).to(ownerExchange()).with("owner.event.deletion_requested");
+    }
+
+    @Bean
+    public Binding ownerDeletedBinding() {
+        return BindingBuilder.bind(ownerEventQueue()).to(ownerExchange()).with("owner.event.deleted");
+    }
+
+    // Durable and shared, unlike the queues above: the cats of a deleted owner are removed by one instance,
+    // and a request published while the service is down is still handled.
+    @Bean
+    public Queue catOwnerDeletionQueue() {
+        return new Queue("cat.ownerDeletion.queue", true, false, false);
+    }
+
+    @Bean
+    public Binding catOwnerDeletionBinding() {
+        return BindingBuilder.bind(catOwnerDeletionQueue()).to(ownerExchange()).with("owner.event.deletion_requested");
+    }
+}
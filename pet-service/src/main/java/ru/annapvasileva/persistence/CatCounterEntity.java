@@ -0,0 +1,29 @@
+package ru.annapvasileva.persistence;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Only maps cat_counters so that the schema is managed; reads and writes go through CatCounterRepository.
+@Getter
+@Setter
+@Entity
+@Table(name = "cat_counters")
+@IdClass(CatCounterId.class)
+@NoArgsConstructor()
+@AllArgsConstructor()
+public class CatCounterEntity {
+    // "color", "breed" or "owner"
+    @Id
+    @Column(name = "dimension", nullable = false)
+    private String dimension;
+
+    @Id
+    @Column(name = "dimension_value", nullable = false)
+    private String dimensionValue;
+
+    @Column(name = "cat_count", nullable = false)
+    private long catCount;
+}
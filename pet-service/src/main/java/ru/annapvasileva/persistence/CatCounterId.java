@@ -0,0 +1,29 @@
+package ru.annapvasileva.persistence;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.util.Comparator;
+
+@Getter
+@Setter
+@EqualsAndHashCode
+@NoArgsConstructor()
+@AllArgsConstructor()
+public class CatCounterId implements Serializable, Comparable<CatCounterId> {
+    private static final Comparator<CatCounterId> ORDER = Comparator
+            .comparing(CatCounterId::getDimension)
+            .thenComparing(CatCounterId::getDimensionValue);
+
+    private String dimension;
+    private String dimensionValue;
+
+    @Override
+    public int compareTo(CatCounterId other) {
+        return ORDER.compare(this, other);
+    }
+}
@@ -0,0 +1,85 @@
+package ru.annapvasileva.persistence;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Array;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Number of cats per color, per breed and per owner in cat_counters.
+ * Adjusted in the same transaction as the change to cats, so reading a dimension never touches the cats table.
+ * Rows that dropped to zero are kept and skipped on reads.
+ */
+@Repository
+public class CatCounterRepository {
+    public static final String COLOR = "color";
+    public static final String BREED = "breed";
+    public static final String OWNER = "owner";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CatCounterRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // One JDBC batch, in key order so that concurrent writers lock counter rows in the same sequence.
+    public void adjust(Map<CatCounterId, Long> deltas) {
+        List<Object[]> rows = new TreeMap<>(deltas).entrySet().stream()
+                .filter(entry -> entry.getValue() != 0)
+                .map(entry -> new Object[] {entry.getKey().getDimension(), entry.getKey().getDimensionValue(), entry.getValue()})
+                .toList();
+        if (rows.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("""
+                insert into cat_counters (dimension, dimension_value, cat_count) values (?, ?, ?)
+                on conflict (dimension, dimension_value) do update set cat_count = cat_counters.cat_count + excluded.cat_count
+                """,
+                rows);
+    }
+
+    // Called before the cats are deleted, since their colors, breeds and owners are read from the cats table.
+    public void catsRemoved(Collection<UUID> catIds) {
+        jdbcTemplate.update("""
+                update cat_counters c set cat_count = c.cat_count - d.n
+                from (
+                    select 'color' as dimension, coalesce(color, '') as dimension_value, count(*) as n from cats where id = any(?) group by color
+                    union all
+                    select 'breed', breed, count(*) from cats where id = any(?) group by breed
+                    union all
+                    select 'owner', owner_id::text, count(*) from cats where id = any(?) group by owner_id
+                ) d
+                where c.dimension = d.dimension and c.dimension_value = d.dimension_value
+                """,
+                ps -> {
+                    Array ids = ps.getConnection().createArrayOf("uuid", catIds.toArray());
+                    ps.setArray(1, ids);
+                    ps.setArray(2, ids);
+                    ps.setArray(3, ids);
+                });
+    }
+
+    public Map<String, Long> findCounts(String dimension) {
+        Map<String, Long> counts = new HashMap<>();
+        jdbcTemplate.query(
+                "select dimension_value, cat_count from cat_counters where dimension = ? and cat_count > 0",
+                (RowCallbackHandler) rs -> counts.put(rs.getString(1), rs.getLong(2)),
+                dimension);
+        return counts;
+    }
+
+    public Optional<Long> findCount(String dimension, String value) {
+        List<Long> counts = jdbcTemplate.queryForList(
+                "select cat_count from cat_counters where dimension = ? and dimension_value = ?",
+                Long.class, dimension, value);
+        return counts.stream().findFirst();
+    }
+}
@@ -5,23 +5,31 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
-import org.hibernate.annotations.UuidGenerator;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import ru.annapvasileva.cats.Colors;
+import ru.annapvasileva.util.TimeOrderedUuid;
 
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.UUID;
 
 @Getter
 @Setter
 @Entity
-@Table(name="cats")
+@Table(name="cats", indexes = {
+        @Index(name = "idx_cats_name_id", columnList = "name, id"), // keyset listing by name
+        @Index(name = "idx_cats_owner_id_id", columnList = "owner_id, id"), // listing and deleting the cats of an owner
+        @Index(name = "idx_cats_breed_color_birth", columnList = "breed, color, date_of_birth"), // search by breed
+        @Index(name = "idx_cats_color_birth", columnList = "color, date_of_birth"), // search by color
+        @Index(name = "idx_cats_birth_date", columnList = "date_of_birth") // search by age only
+})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "cats") // only used when the second-level cache is enabled
 @NoArgsConstructor() // Lombok will create a constructor
 @AllArgsConstructor()
 public class CatEntity {
     @Id
-    @UuidGenerator(style = UuidGenerator.Style.RANDOM)
+    @TimeOrderedUuid
     private UUID id;
 
     @Column(name="name", nullable=false)
@@ -39,14 +47,8 @@ public class CatEntity {
     @Column(name="owner_id", nullable=false)
     private UUID ownerId;
 
-    @ManyToMany(cascade = {
-            CascadeType.PERSIST,
-            CascadeType.MERGE
-    })
-    @JoinTable(
-            name = "cat_friends",
-            joinColumns = @JoinColumn(name = "first_cat_id"),
-            inverseJoinColumns = @JoinColumn(name = "second_cat_id")
-    )
-    private List<CatEntity> friends = new ArrayList<>();
+    // A cat read from a stale second-level cache entry cannot be written back over a newer row.
+    @Version
+    @Column(name="version", nullable=false)
+    private Long version;
 }
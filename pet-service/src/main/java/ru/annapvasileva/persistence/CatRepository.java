@@ -1,9 +1,30 @@
 package ru.annapvasileva.persistence;
 
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
 
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
-public interface CatRepository extends JpaRepository<CatEntity, UUID> {
-    void deleteByOwnerId(UUID ownerId);
-}
\ No newline at end of file
+public interface CatRepository extends JpaRepository<CatEntity, UUID>, JpaSpecificationExecutor<CatEntity> {
+    Page<CatEntity> findByOwnerId(UUID ownerId, Pageable pageable);
+
+    // Reads the row from the database, not the second-level cache, and holds it until the transaction ends.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from CatEntity c where c.id = :id")
+    Optional<CatEntity> findForUpdate(UUID id);
+
+    // In id order, so that successive chunks of a cascade delete lock rows in a stable order.
+    @Query("select c.id from CatEntity c where c.ownerId = :ownerId order by c.id")
+    List<UUID> findIdsByOwnerId(UUID ownerId, Pageable pageable);
+
+    // Planner statistics instead of count(*): refreshed by autovacuum/ANALYZE, so only approximately right.
+    @Query(value = "select greatest(reltuples, 0)::bigint from pg_class where oid = 'cats'::regclass", nativeQuery = true)
+    long estimateCount();
+}
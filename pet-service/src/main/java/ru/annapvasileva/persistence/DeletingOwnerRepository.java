@@ -0,0 +1,48 @@
+package ru.annapvasileva.persistence;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Owners whose deletion has started, in deleting_owners: the fence that keeps cats from being added to them,
+ * since KnownOwners on other replicas only forgets an owner once the owner event reaches it.
+ * Cat writes lock their owners shared and markDeleting locks the owner exclusively, so the mark is only
+ * committed after every write that did not see it, and the cat deletion that follows finds their cats.
+ * Rows are never removed: owner ids are not reused, a cat write that checked the owner before the deletion
+ * reached it must still be turned away after the saga completes, and one row per deleted owner is cheap.
+ */
+@Repository
+public class DeletingOwnerRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public DeletingOwnerRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Idempotent. Waits for the cat writes that hold a lock on the owner.
+    public void markDeleting(UUID ownerId) {
+        jdbcTemplate.query(
+                "select pg_advisory_xact_lock(hashtext('deleting_owners'), hashtext(cast(? as text)))",
+                ps -> ps.setObject(1, ownerId),
+                rs -> {});
+        jdbcTemplate.update("insert into deleting_owners (owner_id) values (?) on conflict do nothing", ownerId);
+    }
+
+    // Locks the owners against markDeleting until the end of the transaction.
+    // Returns false if any of them is already being deleted.
+    public boolean lockNotDeleting(Collection<UUID> ownerIds) {
+        UUID[] ids = ownerIds.toArray(UUID[]::new);
+        jdbcTemplate.query(
+                "select pg_advisory_xact_lock_shared(hashtext('deleting_owners'), hashtext(o::text)) from unnest(?) as o",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", ids)),
+                rs -> {});
+        Boolean deleting = jdbcTemplate.query(
+                "select exists (select 1 from deleting_owners where owner_id = any(?))",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", ids)),
+                rs -> rs.next() && rs.getBoolean(1));
+        return !Boolean.TRUE.equals(deleting);
+    }
+}
@@ -0,0 +1,6 @@
+package ru.annapvasileva.persistence;
+
+import java.util.UUID;
+
+// One row of cat_friends, read without loading either CatEntity.
+public record FriendLink(UUID catId, UUID friendId) {}
@@ -0,0 +1,29 @@
+package ru.annapvasileva.persistence;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.UUID;
+
+// Only maps cat_friends so that the schema (and its primary key) is managed;
+// all reads and writes go through FriendshipRepository.
+@Getter
+@Setter
+@Entity
+@Table(name = "cat_friends",
+        indexes = @Index(name = "idx_cat_friends_second_cat_id", columnList = "second_cat_id")) // reverse lookups and deletes by friend
+@IdClass(FriendshipId.class)
+@NoArgsConstructor()
+@AllArgsConstructor()
+public class FriendshipEntity {
+    @Id
+    @Column(name = "first_cat_id", nullable = false)
+    private UUID firstCatId;
+
+    @Id
+    @Column(name = "second_cat_id", nullable = false)
+    private UUID secondCatId;
+}
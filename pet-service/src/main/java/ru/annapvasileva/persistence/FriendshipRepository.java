@@ -0,0 +1,161 @@
+package ru.annapvasileva.persistence;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * Friendship edges in cat_friends. Every friendship is stored as two directed rows,
+ * so the friends of a cat are a single range on first_cat_id.
+ * Edges are changed one statement at a time and never through the entity collections.
+ * A transaction changing edges first locks every cat at their ends (lockCats).
+ */
+@Repository
+public class FriendshipRepository {
+    private final JdbcTemplate jdbcTemplate;
+    private final int lockStripes;
+
+    public FriendshipRepository(
+            JdbcTemplate jdbcTemplate,
+            @Value("${cats.friends.lock-stripes:256}") int lockStripes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.lockStripes = lockStripes;
+    }
+
+    // Transaction-level advisory locks on the stripes of the cats, taken in ascending order so that
+    // concurrent writers cannot deadlock. Striped, so that deleting a large chunk of cats takes at most
+    // lockStripes locks. Released at the end of the transaction.
+    public void lockCats(Collection<UUID> catIds) {
+        Integer[] stripes = catIds.stream()
+                .map(id -> Math.floorMod(id.hashCode(), lockStripes))
+                .distinct()
+                .sorted()
+                .toArray(Integer[]::new);
+        if (stripes.length == 0) {
+            return;
+        }
+        jdbcTemplate.query(
+                "select pg_advisory_xact_lock(hashtext('cat_friends'), s) from unnest(?) as s",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("integer", stripes)),
+                rs -> {});
+    }
+
+    // Idempotent. Returns false if the cats were already friends.
+    public boolean add(UUID id1, UUID id2) {
+        UUID low = min(id1, id2);
+        UUID high = max(id1, id2);
+        // Both rows in canonical order, so concurrent writers lock them in the same sequence.
+        int inserted = jdbcTemplate.update(
+                "insert into cat_friends (first_cat_id, second_cat_id) values (?, ?), (?, ?) on conflict do nothing",
+                low, high, high, low);
+        return inserted > 0;
+    }
+
+    // Idempotent. Returns false if the cats were not friends.
+    public boolean remove(UUID id1, UUID id2) {
+        UUID low = min(id1, id2);
+        UUID high = max(id1, id2);
+        int deleted = jdbcTemplate.update(
+                "delete from cat_friends where (first_cat_id = ? and second_cat_id = ?) or (first_cat_id = ? and second_cat_id = ?)",
+                low, high, high, low);
+        return deleted > 0;
+    }
+
+    // One JDBC batch for all new edges of a cat. Sorted, so the lock order matches single-edge writers.
+    public void addAll(UUID catId, Collection<UUID> friendIds) {
+        List<Object[]> rows = friendIds.stream()
+                .sorted()
+                .map(friendId -> {
+                    UUID low = min(catId, friendId);
+                    UUID high = max(catId, friendId);
+                    return new Object[] {low, high, high, low};
+                })
+                .toList();
+        jdbcTemplate.batchUpdate(
+                "insert into cat_friends (first_cat_id, second_cat_id) values (?, ?), (?, ?) on conflict do nothing",
+                rows);
+    }
+
+    // One statement for all edges between the cat and the given friends.
+    public void removeAll(UUID catId, Collection<UUID> friendIds) {
+        jdbcTemplate.update(
+                "delete from cat_friends where (first_cat_id = ? and second_cat_id = any(?)) or (second_cat_id = ? and first_cat_id = any(?))",
+                ps -> {
+                    Array ids = ps.getConnection().createArrayOf("uuid", friendIds.toArray());
+                    ps.setObject(1, catId);
+                    ps.setArray(2, ids);
+                    ps.setObject(3, catId);
+                    ps.setArray(4, ids);
+                });
+    }
+
+    public boolean exists(UUID id1, UUID id2) {
+        Boolean exists = jdbcTemplate.queryForObject(
+                "select exists(select 1 from cat_friends where first_cat_id = ? and second_cat_id = ?)",
+                Boolean.class, id1, id2);
+        return Boolean.TRUE.equals(exists);
+    }
+
+    public List<UUID> findFriendIds(UUID catId) {
+        return jdbcTemplate.queryForList(
+                "select second_cat_id from cat_friends where first_cat_id = ?", UUID.class, catId);
+    }
+
+    public List<FriendLink> findFriendLinks(Collection<UUID> catIds) {
+        return jdbcTemplate.query(
+                "select first_cat_id, second_cat_id from cat_friends where first_cat_id = any(?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", catIds.toArray())),
+                (rs, rowNum) -> new FriendLink(rs.getObject(1, UUID.class), rs.getObject(2, UUID.class)));
+    }
+
+    // Streams every directed row, used to build the in-memory friend graph.
+    // Transactional because the PostgreSQL driver only honours the fetch size outside auto-commit.
+    @Transactional(readOnly = true)
+    public void forEachEdge(BiConsumer<UUID, UUID> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement("select first_cat_id, second_cat_id from cat_friends");
+            ps.setFetchSize(10_000);
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(rs.getObject(1, UUID.class), rs.getObject(2, UUID.class)));
+    }
+
+    // Friends of the given cats that are not among them, i.e. the cats whose friend lists change when the given ones go.
+    public List<UUID> findOutsideFriends(Collection<UUID> catIds) {
+        return jdbcTemplate.query(
+                "select distinct second_cat_id from cat_friends where first_cat_id = any(?) and not (second_cat_id = any(?))",
+                ps -> {
+                    Array ids = ps.getConnection().createArrayOf("uuid", catIds.toArray());
+                    ps.setArray(1, ids);
+                    ps.setArray(2, ids);
+                },
+                (rs, rowNum) -> rs.getObject(1, UUID.class));
+    }
+
+    // Drops every edge touching one of the cats, in both directions.
+    public void removeAll(Collection<UUID> catIds) {
+        jdbcTemplate.update(
+                "delete from cat_friends where first_cat_id = any(?) or second_cat_id = any(?)",
+                ps -> {
+                    Array ids = ps.getConnection().createArrayOf("uuid", catIds.toArray());
+                    ps.setArray(1, ids);
+                    ps.setArray(2, ids);
+                });
+    }
+
+    private static UUID min(UUID a, UUID b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+
+    private static UUID max(UUID a, UUID b) {
+        return a.compareTo(b) <= 0 ? b : a;
+    }
+}
@@ -0,0 +1,31 @@
+package ru.annapvasileva.persistence;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.UUID;
+
+// Only maps cat_suggestions so that the schema is managed; reads and writes go through SuggestionRepository.
+@Getter
+@Setter
+@Entity
+@Table(name = "cat_suggestions", indexes = @Index(name = "idx_cat_suggestions_candidate", columnList = "candidate_id"))
+@IdClass(SuggestionId.class)
+@NoArgsConstructor()
+@AllArgsConstructor()
+public class SuggestionEntity {
+    @Id
+    @Column(name = "cat_id", nullable = false)
+    private UUID catId;
+
+    @Id
+    @Column(name = "candidate_id", nullable = false)
+    private UUID candidateId;
+
+    // Number of friends the two cats have in common.
+    @Column(name = "common_count", nullable = false)
+    private int commonCount;
+}
@@ -0,0 +1,20 @@
+package ru.annapvasileva.persistence;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+@Getter
+@Setter
+@EqualsAndHashCode
+@NoArgsConstructor()
+@AllArgsConstructor()
+public class SuggestionId implements Serializable {
+    private UUID catId;
+    private UUID candidateId;
+}
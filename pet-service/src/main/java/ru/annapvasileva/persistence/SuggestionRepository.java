@@ -0,0 +1,132 @@
+package ru.annapvasileva.persistence;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.annapvasileva.cats.CatSuggestionDto;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Common friend counts in cat_suggestions, one row per ordered pair of cats with at least one common friend.
+ * The counts are adjusted in the same transaction as the cat_friends change, so they match the committed edges.
+ * That only holds because the caller has locked every cat whose edges change (FriendshipRepository.lockCats):
+ * under READ COMMITTED two concurrent changes sharing a cat would otherwise each miss the other's new edge.
+ * A change is given as one cat and the set of friends it gained or lost, after cat_friends was written;
+ * every ordered pair affected by it is counted exactly once.
+ */
+@Repository
+public class SuggestionRepository {
+    // Pairs that gained or lost a common friend when the cat ? gained or lost the friends in the array.
+    // The neighbourhood adds the changed friends back, since after a removal cat_friends no longer holds them.
+    private static final String CHANGED_PAIRS = """
+            with changed(id) as (select unnest(?)),
+                 neighbourhood(id) as (select second_cat_id from cat_friends where first_cat_id = ? union select id from changed),
+                 pairs(cat_id, candidate_id) as (
+                     select b.id, x.id from changed b join neighbourhood x on x.id <> b.id
+                     union all
+                     select x.id, b.id from changed b cross join neighbourhood x where x.id not in (select id from changed)
+                     union all
+                     select ?::uuid, f.second_cat_id from cat_friends f where f.first_cat_id in (select id from changed) and f.second_cat_id <> ?
+                     union all
+                     select f.second_cat_id, ?::uuid from cat_friends f where f.first_cat_id in (select id from changed) and f.second_cat_id <> ?
+                 )
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SuggestionRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void friendsAdded(UUID catId, Collection<UUID> friendIds) {
+        jdbcTemplate.update(CHANGED_PAIRS + """
+                insert into cat_suggestions (cat_id, candidate_id, common_count)
+                select cat_id, candidate_id, count(*) from pairs
+                group by cat_id, candidate_id
+                on conflict (cat_id, candidate_id) do update set common_count = cat_suggestions.common_count + excluded.common_count
+                """,
+                ps -> bindChangedPairs(ps, catId, friendIds));
+    }
+
+    public void friendsRemoved(UUID catId, Collection<UUID> friendIds) {
+        jdbcTemplate.update(CHANGED_PAIRS + """
+                update cat_suggestions s set common_count = s.common_count - d.delta
+                from (select cat_id, candidate_id, count(*) as delta from pairs group by cat_id, candidate_id) d
+                where s.cat_id = d.cat_id and s.candidate_id = d.candidate_id
+                """,
+                ps -> bindChangedPairs(ps, catId, friendIds));
+        // Only rows of the cats touched above can have dropped to zero.
+        jdbcTemplate.update("""
+                delete from cat_suggestions
+                where common_count <= 0
+                  and (cat_id = ? or cat_id = any(?)
+                       or cat_id in (select second_cat_id from cat_friends where first_cat_id = ? or first_cat_id = any(?)))
+                """,
+                ps -> {
+                    Array friends = uuidArray(ps, friendIds);
+                    ps.setObject(1, catId);
+                    ps.setArray(2, friends);
+                    ps.setObject(3, catId);
+                    ps.setArray(4, friends);
+                });
+    }
+
+    // Unlike the methods above, called before the cats' edges are deleted: every pair of their friends
+    // loses one common friend per deleted cat, and the rows of the deleted cats go away.
+    public void catsRemoved(Collection<UUID> catIds) {
+        jdbcTemplate.update("""
+                update cat_suggestions s set common_count = s.common_count - d.delta
+                from (
+                    select f1.second_cat_id as cat_id, f2.second_cat_id as candidate_id, count(*) as delta
+                    from cat_friends f1 join cat_friends f2 on f1.first_cat_id = f2.first_cat_id and f1.second_cat_id <> f2.second_cat_id
+                    where f1.first_cat_id = any(?)
+                    group by f1.second_cat_id, f2.second_cat_id
+                ) d
+                where s.cat_id = d.cat_id and s.candidate_id = d.candidate_id
+                """,
+                ps -> ps.setArray(1, uuidArray(ps, catIds)));
+        jdbcTemplate.update("""
+                delete from cat_suggestions
+                where cat_id = any(?) or candidate_id = any(?)
+                   or (common_count <= 0 and cat_id in (select second_cat_id from cat_friends where first_cat_id = any(?)))
+                """,
+                ps -> {
+                    Array ids = uuidArray(ps, catIds);
+                    ps.setArray(1, ids);
+                    ps.setArray(2, ids);
+                    ps.setArray(3, ids);
+                });
+    }
+
+    // Best candidates that are not friends already.
+    public List<CatSuggestionDto> findTop(UUID catId, int limit) {
+        return jdbcTemplate.query("""
+                select candidate_id, common_count from cat_suggestions s
+                where s.cat_id = ? and s.common_count > 0
+                  and not exists (select 1 from cat_friends f where f.first_cat_id = s.cat_id and f.second_cat_id = s.candidate_id)
+                order by s.common_count desc, s.candidate_id
+                limit ?
+                """,
+                (rs, rowNum) -> new CatSuggestionDto(rs.getObject(1, UUID.class), rs.getInt(2)),
+                catId, limit);
+    }
+
+    private static void bindChangedPairs(PreparedStatement ps, UUID catId, Collection<UUID> friendIds)
+            throws SQLException {
+        ps.setArray(1, uuidArray(ps, friendIds));
+        ps.setObject(2, catId);
+        ps.setObject(3, catId);
+        ps.setObject(4, catId);
+        ps.setObject(5, catId);
+        ps.setObject(6, catId);
+    }
+
+    private static Array uuidArray(PreparedStatement ps, Collection<UUID> ids) throws SQLException {
+        return ps.getConnection().createArrayOf("uuid", ids.toArray());
+    }
+}
@@ -0,0 +1,29 @@
+package ru.annapvasileva.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+import ru.annapvasileva.cats.CatEvent;
+import ru.annapvasileva.persistence.CatEntity;
+
+// Drops a cat from the second-level cache of this instance once any instance committed a change to it.
+// A no-op while the cache is disabled.
+@Component
+public class CatCacheEvictionListener {
+    private final ObjectMapper objectMapper;
+    private final EntityManagerFactory entityManagerFactory;
+
+    public CatCacheEvictionListener(ObjectMapper objectMapper, EntityManagerFactory entityManagerFactory) {
+        this.objectMapper = objectMapper;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    // One consumer, like the other event listeners (see spring.rabbitmq.listener.simple.concurrency).
+    @RabbitListener(queues = "#{catCacheEventQueue.name}", concurrency = "1")
+    public void handleCatEvent(Message message) throws Exception {
+        CatEvent event = objectMapper.readValue(message.getBody(), CatEvent.class);
+        entityManagerFactory.getCache().evict(CatEntity.class, event.getCatId());
+    }
+}
@@ -0,0 +1,53 @@
+package ru.annapvasileva.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+import ru.annapvasileva.cats.CatEvent;
+import ru.annapvasileva.cats.CatEventType;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+// Every pet service replica applies all friendship changes, including its own, to its friend graph.
+@Component
+public class CatEventListener {
+    private final ObjectMapper objectMapper;
+    private final FriendGraphIndex friendGraphIndex;
+    private final SuggestionService suggestionService;
+
+    public CatEventListener(
+            ObjectMapper objectMapper,
+            FriendGraphIndex friendGraphIndex,
+            SuggestionService suggestionService) {
+        this.objectMapper = objectMapper;
+        this.friendGraphIndex = friendGraphIndex;
+        this.suggestionService = suggestionService;
+    }
+
+    // One consumer: the friend graph applies friendship changes in publication order.
+    @RabbitListener(queues = "#{friendGraphEventQueue.name}", concurrency = "1")
+    public void handleCatEvent(Message message) throws Exception {
+        CatEvent event = objectMapper.readValue(message.getBody(), CatEvent.class);
+        // Read the neighbourhood before the graph forgets the removed edges.
+        suggestionService.invalidate(affectedSuggestions(event));
+        friendGraphIndex.apply(event);
+    }
+
+    // Cats whose common friend counts may have changed.
+    private Set<UUID> affectedSuggestions(CatEvent event) {
+        Set<UUID> affected = new HashSet<>();
+        affected.add(event.getCatId());
+        affected.addAll(friendGraphIndex.friends(event.getCatId()));
+        if (event.getType() == CatEventType.DELETED) {
+            // The deleted cat may be a candidate of every cat two steps away.
+            affected.addAll(friendGraphIndex.friendsOfFriends(event.getCatId(), Integer.MAX_VALUE));
+        } else if (event.getFriendId() != null) {
+            affected.add(event.getFriendId());
+            affected.addAll(friendGraphIndex.friends(event.getFriendId()));
+        }
+        return affected;
+    }
+}
@@ -0,0 +1,48 @@
+package ru.annapvasileva.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+import ru.annapvasileva.infra.Outbox;
+import ru.annapvasileva.cats.CatEvent;
+import ru.annapvasileva.cats.CatEventType;
+
+import java.util.UUID;
+
+@Component
+public class CatEventPublisher {
+    private final Outbox outbox;
+    private final ObjectMapper objectMapper;
+
+    public CatEventPublisher(Outbox outbox, ObjectMapper objectMapper) {
+        this.outbox = outbox;
+        this.objectMapper = objectMapper;
+    }
+
+    // Written to the outbox in the caller's transaction; the outbox relay sends it once committed.
+    public void publish(CatEventType type, UUID catId, UUID ownerId) {
+        send(new CatEvent(type, catId, ownerId));
+    }
+
+    // UPDATED without an owner: only the cat's friend list changed, which does not touch its owner.
+    public void publishFriendListChanged(UUID catId) {
+        send(new CatEvent(CatEventType.UPDATED, catId, null));
+    }
+
+    public void publishFriendship(CatEventType type, UUID catId, UUID ownerId, UUID friendId) {
+        send(new CatEvent(type, catId, ownerId, friendId));
+    }
+
+    private void send(CatEvent event) {
+        String routingKey = "cat.event." + event.getType().name().toLowerCase();
+        outbox.append("cat.exchange", routingKey, toBytes(event));
+    }
+
+    private byte[] toBytes(CatEvent event) {
+        try {
+            return objectMapper.writeValueAsBytes(event);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Error serializing event", e);
+        }
+    }
+}
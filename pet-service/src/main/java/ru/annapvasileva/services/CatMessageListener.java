@@ -6,13 +6,23 @@ import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Component;
 import ru.annapvasileva.cats.CatDto;
+import ru.annapvasileva.cats.CatSearchRequest;
+import ru.annapvasileva.cats.CatStatsDto;
+import ru.annapvasileva.cats.CatSuggestionDto;
 import ru.annapvasileva.cats.CreateCatRequest;
+import ru.annapvasileva.owners.OwnerEvent;
+import ru.annapvasileva.util.CursorPage;
+import ru.annapvasileva.util.OperationFailedException;
+import ru.annapvasileva.util.RpcErrors;
+import ru.annapvasileva.util.ScrollRequest;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
@@ -23,27 +33,64 @@ public class CatMessageListener {
     private final CatService catService;
     private final RabbitTemplate rabbitTemplate;
 
-    public CatMessageListener(ObjectMapper objectMapper, CatService catService, RabbitTemplate rabbitTemplate) {
+    private final FriendGraphIndex friendGraphIndex;
+    private final SuggestionService suggestionService;
+    private final CatStatsService catStatsService;
+    private final int maxSeparation;
+
+    public CatMessageListener(
+            ObjectMapper objectMapper,
+            CatService catService,
+            RabbitTemplate rabbitTemplate,
+            FriendGraphIndex friendGraphIndex,
+            SuggestionService suggestionService,
+            CatStatsService catStatsService,
+            @Value("${cats.friend-graph.max-separation:6}") int maxSeparation) {
         this.objectMapper = objectMapper;
         this.catService = catService;
         this.rabbitTemplate = rabbitTemplate;
+        this.friendGraphIndex = friendGraphIndex;
+        this.suggestionService = suggestionService;
+        this.catStatsService = catStatsService;
+        this.maxSeparation = maxSeparation;
     }
 
     @RabbitListener(queues = "cat.create.queue")
     public void handleCreateCat(Message message) throws Exception {
         CreateCatRequest request = objectMapper.readValue(message.getBody(), CreateCatRequest.class);
-        Optional<CatDto> created = catService.createCat(
-                request.getName(),
-                request.getDateOfBirth(),
-                request.getBreed(),
-                request.getColor(),
-                request.getOwnerId());
+        Optional<CatDto> created;
+        try {
+            created = catService.createCat(
+                    request.getName(),
+                    request.getDateOfBirth(),
+                    request.getBreed(),
+                    request.getColor(),
+                    request.getOwnerId());
+        } catch (OperationFailedException e) {
+            replyUpstreamTimeout(message);
+            return;
+        }
 
         if (created.isPresent()) {
             reply(message, objectMapper.writeValueAsBytes(created.get()));
         }
     }
 
+    // Always replies; an empty list means that nothing was created.
+    @RabbitListener(queues = "cat.createBatch.queue")
+    public void handleCreateCatBatch(Message message) throws Exception {
+        List<CreateCatRequest> requests = objectMapper.readValue(message.getBody(), new TypeReference<>() {});
+        List<CatDto> created;
+        try {
+            created = catService.createCats(requests).orElse(List.of());
+        } catch (OperationFailedException e) {
+            replyUpstreamTimeout(message);
+            return;
+        }
+
+        reply(message, objectMapper.writeValueAsBytes(created));
+    }
+
     @RabbitListener(queues = "cat.get.queue")
     public void handleGetCat(Message message) throws Exception {
         UUID catId = UUID.fromString(new String(message.getBody()));
@@ -54,6 +101,15 @@ public class CatMessageListener {
         }
     }
 
+    // Always replies, missing ids are simply left out of the list.
+    @RabbitListener(queues = "cat.getBatch.queue")
+    public void handleGetCatBatch(Message message) throws Exception {
+        List<UUID> catIds = objectMapper.readValue(message.getBody(), new TypeReference<>() {});
+        List<CatDto> cats = catService.getCats(catIds);
+
+        reply(message, objectMapper.writeValueAsBytes(cats));
+    }
+
     @RabbitListener(queues = "cat.getAll.queue")
     public void handleGetAllCats(Message message) throws Exception {
         Map<String, Object> params = objectMapper.readValue(message.getBody(), new TypeReference<>() {});
@@ -68,6 +124,55 @@ public class CatMessageListener {
         reply(message, objectMapper.writeValueAsBytes(cats));
     }
 
+    @RabbitListener(queues = "cat.getByOwner.queue")
+    public void handleGetCatsByOwner(Message message) throws Exception {
+        Map<String, Object> params = objectMapper.readValue(message.getBody(), new TypeReference<>() {});
+        UUID ownerId = UUID.fromString((String) params.get("ownerId"));
+        int page = (int) params.get("page");
+        int size = (int) params.get("size");
+
+        Page<CatDto> cats = catService.getCatsByOwner(ownerId, PageRequest.of(page, size, Sort.by("id")));
+
+        reply(message, objectMapper.writeValueAsBytes(cats));
+    }
+
+    @RabbitListener(queues = "cat.stats.queue")
+    public void handleStats(Message message) throws Exception {
+        Map<String, Object> params = objectMapper.readValue(message.getBody(), new TypeReference<>() {});
+        String ownerId = (String) params.get("ownerId");
+        CatStatsDto stats = catStatsService.getStats(ownerId == null ? null : UUID.fromString(ownerId));
+
+        reply(message, objectMapper.writeValueAsBytes(stats));
+    }
+
+    // Replies with null for an unknown sort property.
+    @RabbitListener(queues = "cat.search.queue")
+    public void handleSearchCats(Message message) throws Exception {
+        CatSearchRequest request = objectMapper.readValue(message.getBody(), CatSearchRequest.class);
+        Page<CatDto> cats;
+        try {
+            cats = catService.searchCats(request);
+        } catch (IllegalArgumentException e) {
+            cats = null;
+        }
+
+        reply(message, objectMapper.writeValueAsBytes(cats));
+    }
+
+    // Replies with null for an unknown sort property or a malformed cursor.
+    @RabbitListener(queues = "cat.scroll.queue")
+    public void handleScrollCats(Message message) throws Exception {
+        ScrollRequest request = objectMapper.readValue(message.getBody(), ScrollRequest.class);
+        CursorPage<CatDto> cats;
+        try {
+            cats = catService.scrollCats(request);
+        } catch (IllegalArgumentException e) {
+            cats = null;
+        }
+
+        reply(message, objectMapper.writeValueAsBytes(cats));
+    }
+
     @RabbitListener(queues = "cat.makeFriends.queue")
     public void handleMakeFriends(Message message) throws Exception {
         Map<String, UUID> ids = objectMapper.readValue(message.getBody(), new TypeReference<>() {});
@@ -84,6 +189,43 @@ public class CatMessageListener {
         reply(message, objectMapper.writeValueAsBytes(success));
     }
 
+    @RabbitListener(queues = "cat.mutualFriends.queue")
+    public void handleMutualFriends(Message message) throws Exception {
+        Map<String, UUID> ids = objectMapper.readValue(message.getBody(), new TypeReference<>() {});
+        List<UUID> mutualFriends = friendGraphIndex.mutualFriends(ids.get("id1"), ids.get("id2"));
+
+        reply(message, objectMapper.writeValueAsBytes(mutualFriends));
+    }
+
+    @RabbitListener(queues = "cat.friendsOfFriends.queue")
+    public void handleFriendsOfFriends(Message message) throws Exception {
+        Map<String, Object> params = objectMapper.readValue(message.getBody(), new TypeReference<>() {});
+        UUID catId = UUID.fromString((String) params.get("id"));
+        int limit = (int) params.get("limit");
+        List<UUID> friendsOfFriends = friendGraphIndex.friendsOfFriends(catId, limit);
+
+        reply(message, objectMapper.writeValueAsBytes(friendsOfFriends));
+    }
+
+    // Replies with -1 when the cats are not connected within cats.friend-graph.max-separation steps.
+    @RabbitListener(queues = "cat.separation.queue")
+    public void handleSeparation(Message message) throws Exception {
+        Map<String, UUID> ids = objectMapper.readValue(message.getBody(), new TypeReference<>() {});
+        int degrees = friendGraphIndex.separation(ids.get("id1"), ids.get("id2"), maxSeparation).orElse(-1);
+
+        reply(message, objectMapper.writeValueAsBytes(degrees));
+    }
+
+    @RabbitListener(queues = "cat.suggestions.queue")
+    public void handleSuggestions(Message message) throws Exception {
+        Map<String, Object> params = objectMapper.readValue(message.getBody(), new TypeReference<>() {});
+        UUID catId = UUID.fromString((String) params.get("id"));
+        int limit = (int) params.get("limit");
+        List<CatSuggestionDto> suggestions = suggestionService.getSuggestions(catId, limit);
+
+        reply(message, objectMapper.writeValueAsBytes(suggestions));
+    }
+
     @RabbitListener(queues = "cat.delete.queue")
     public void handleDeleteCat(Message message) throws Exception {
         UUID catId = UUID.fromString(new String(message.getBody()));
@@ -92,18 +234,27 @@ public class CatMessageListener {
         reply(message, new byte[0]);
     }
 
-    @RabbitListener(queues = "cat.deleteByOwner.queue")
-    public void handleDeleteByOwner(Message message) throws Exception {
-        UUID ownerId = UUID.fromString(new String(message.getBody()));
-        catService.deleteCatsByOwner(ownerId);
+    // The cats step of the owner deletion saga. Redelivery after a failure just deletes the remaining cats.
+    // One consumer, unlike the RPC queues above.
+    @RabbitListener(queues = "cat.ownerDeletion.queue", concurrency = "1")
+    public void handleOwnerDeletion(Message message) throws Exception {
+        OwnerEvent event = objectMapper.readValue(message.getBody(), OwnerEvent.class);
+        catService.deleteCatsByOwner(event.getOwnerId());
 
-        reply(message, new byte[0]);
+        rabbitTemplate.send("owner.exchange", "owner.deletion.cats",
+                new Message(event.getOwnerId().toString().getBytes(), new MessageProperties()));
     }
 
     @RabbitListener(queues = "cat.update.queue")
     public void handleUpdateCat(Message message) throws Exception {
         CatDto catDto = objectMapper.readValue(message.getBody(), CatDto.class);
-        Optional<CatDto> updated = catService.updateCat(catDto);
+        Optional<CatDto> updated;
+        try {
+            updated = catService.updateCat(catDto);
+        } catch (OperationFailedException e) {
+            replyUpstreamTimeout(message);
+            return;
+        }
 
         if(updated.isPresent()) {
             reply(message, objectMapper.writeValueAsBytes(updated.get()));
@@ -111,11 +262,21 @@ public class CatMessageListener {
     }
 
     private void reply(Message requestMessage, byte[] responseBody) {
+        reply(requestMessage, responseBody, new MessageProperties());
+    }
+
+    // The owner check could not be answered, which is not the same as the owner not existing.
+    private void replyUpstreamTimeout(Message requestMessage) {
+        MessageProperties responseProps = new MessageProperties();
+        responseProps.setHeader(RpcErrors.HEADER, RpcErrors.UPSTREAM_TIMEOUT);
+        reply(requestMessage, new byte[0], responseProps);
+    }
+
+    private void reply(Message requestMessage, byte[] responseBody, MessageProperties responseProps) {
         MessageProperties props = requestMessage.getMessageProperties();
         String replyTo = props.getReplyTo();
         String correlationId = props.getCorrelationId();
 
-        MessageProperties responseProps = new MessageProperties();
         responseProps.setCorrelationId(correlationId);
 
         Message response = new Message(responseBody, responseProps);
@@ -1,73 +1,226 @@
 package ru.annapvasileva.services;
 
-import org.springframework.amqp.core.Message;
-import org.springframework.amqp.core.MessageProperties;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.annapvasileva.cats.CatDto;
+import ru.annapvasileva.cats.CatEventType;
+import ru.annapvasileva.cats.CatSearchRequest;
 import ru.annapvasileva.cats.Colors;
+import ru.annapvasileva.cats.CreateCatRequest;
+import ru.annapvasileva.persistence.CatCounterId;
+import ru.annapvasileva.persistence.CatCounterRepository;
 import ru.annapvasileva.persistence.CatEntity;
 import ru.annapvasileva.persistence.CatRepository;
+import ru.annapvasileva.persistence.DeletingOwnerRepository;
+import ru.annapvasileva.persistence.FriendLink;
+import ru.annapvasileva.persistence.FriendshipRepository;
+import ru.annapvasileva.persistence.SuggestionRepository;
+import ru.annapvasileva.util.CursorPage;
+import ru.annapvasileva.util.ScrollCursor;
+import ru.annapvasileva.util.ScrollRequest;
 
 import java.io.IOException;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 @Service
 @Transactional
 public class CatService {
+    private static final Logger log = LoggerFactory.getLogger(CatService.class);
+    // Properties a keyset listing may be ordered by (all non-null), with the parsers for their cursor values.
+    private static final Map<String, Function<String, Object>> SCROLL_KEYS = Map.of(
+            "id", UUID::fromString,
+            "name", value -> value,
+            "breed", value -> value,
+            "birthDate", LocalDate::parse);
 
     private final CatRepository catRepository;
-    private final RabbitTemplate rabbitTemplate;
+    private final FriendshipRepository friendshipRepository;
+    private final SuggestionRepository suggestionRepository;
+    private final CatCounterRepository catCounterRepository;
+    private final DeletingOwnerRepository deletingOwnerRepository;
+    private final KnownOwners knownOwners;
+    private final CatEventPublisher catEventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final int deleteChunkSize;
 
     public CatService(
             CatRepository catRepository,
-            RabbitTemplate rabbitTemplate) {
+            FriendshipRepository friendshipRepository,
+            SuggestionRepository suggestionRepository,
+            CatCounterRepository catCounterRepository,
+            DeletingOwnerRepository deletingOwnerRepository,
+            KnownOwners knownOwners,
+            CatEventPublisher catEventPublisher,
+            TransactionTemplate transactionTemplate,
+            @Value("${cats.delete.chunk-size:1000}") int deleteChunkSize) {
         this.catRepository = catRepository;
-        this.rabbitTemplate = rabbitTemplate;
+        this.friendshipRepository = friendshipRepository;
+        this.suggestionRepository = suggestionRepository;
+        this.catCounterRepository = catCounterRepository;
+        this.deletingOwnerRepository = deletingOwnerRepository;
+        this.knownOwners = knownOwners;
+        this.catEventPublisher = catEventPublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.deleteChunkSize = deleteChunkSize;
     }
 
+    // The owner is checked before the transaction begins, so a fallback RPC never holds a connection.
+    // Inside it, only whether the owner's deletion has started is checked, which this replica may not know yet.
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Optional<CatDto> createCat(String name, LocalDate dateOfBirth, String breed, Colors color, UUID ownerId) throws IOException {
-        String correlationId = UUID.randomUUID().toString();
-        MessageProperties properties = new MessageProperties();
-        properties.setCorrelationId(correlationId);
-        properties.setReplyTo("owner.get.reply.queue");
-        Message getOwnerMessage = new Message(ownerId.toString().getBytes(), properties);
-        Message response = rabbitTemplate.sendAndReceive("owner.exchange", "owner.get", getOwnerMessage);
-
-        if (response == null) {
+        if (!knownOwners.exists(ownerId)) {
             return Optional.empty();
         }
-        CatEntity catEntity = new CatEntity();
-        catEntity.setName(name);
-        catEntity.setBirthDate(dateOfBirth);
-        catEntity.setBreed(breed);
-        catEntity.setColor(color);
-        catEntity.setOwnerId(ownerId);
-        catEntity.setFriends(new ArrayList<>());
 
-        CatEntity savedCat = catRepository.save(catEntity);
+        return transactionTemplate.execute(status -> {
+            if (!deletingOwnerRepository.lockNotDeleting(List.of(ownerId))) {
+                return Optional.empty();
+            }
 
-        return Optional.of(convertToDto(savedCat));
+            CatEntity catEntity = new CatEntity();
+            catEntity.setName(name);
+            catEntity.setBirthDate(dateOfBirth);
+            catEntity.setBreed(breed);
+            catEntity.setColor(color);
+            catEntity.setOwnerId(ownerId);
+
+            CatEntity savedCat = catRepository.save(catEntity);
+            adjustCounters(List.of(), countersOf(List.of(savedCat)));
+            catEventPublisher.publish(CatEventType.CREATED, savedCat.getId(), savedCat.getOwnerId());
+
+            return Optional.of(convertToDto(savedCat, Map.of()));
+        });
+    }
+
+    // All or nothing: if any owner does not exist, no cat is created.
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Optional<List<CatDto>> createCats(List<CreateCatRequest> requests) throws IOException {
+        Set<UUID> ownerIds = new HashSet<>();
+        for (CreateCatRequest request : requests) {
+            ownerIds.add(request.getOwnerId());
+        }
+        if (!knownOwners.existing(ownerIds).containsAll(ownerIds)) {
+            return Optional.empty();
+        }
+
+        return transactionTemplate.execute(status -> deletingOwnerRepository.lockNotDeleting(ownerIds)
+                ? Optional.of(insertCats(requests))
+                : Optional.empty());
+    }
+
+    private List<CatDto> insertCats(List<CreateCatRequest> requests) {
+        List<CatEntity> catEntities = new ArrayList<>(requests.size());
+        for (CreateCatRequest request : requests) {
+            CatEntity catEntity = new CatEntity();
+            catEntity.setName(request.getName());
+            catEntity.setBirthDate(request.getDateOfBirth());
+            catEntity.setBreed(request.getBreed());
+            catEntity.setColor(request.getColor());
+            catEntity.setOwnerId(request.getOwnerId());
+            catEntities.add(catEntity);
+        }
+
+        // Inserted in JDBC batches of hibernate.jdbc.batch_size.
+        List<CatEntity> savedCats = catRepository.saveAll(catEntities);
+        adjustCounters(List.of(), countersOf(savedCats));
+        for (CatEntity savedCat : savedCats) {
+            catEventPublisher.publish(CatEventType.CREATED, savedCat.getId(), savedCat.getOwnerId());
+        }
+
+        return savedCats.stream()
+                .map(cat -> convertToDto(cat, Map.of()))
+                .toList();
     }
 
     @Transactional(readOnly = true)
     public Optional<CatDto> getCat(UUID id) {
         return catRepository.findById(id)
-                .map(this::convertToDto);
+                .map(cat -> convertToDtos(List.of(cat)).get(0));
+    }
+
+    @Transactional(readOnly = true)
+    public List<CatDto> getCats(List<UUID> ids) {
+        return convertToDtos(catRepository.findAllById(ids));
     }
 
     @Transactional(readOnly = true)
     public Page<CatDto> getAllCats(Pageable pageable) {
-        return catRepository.findAll(pageable)
-                .map(this::convertToDto);
+        Page<CatEntity> cats = catRepository.findAll(pageable);
+        Map<UUID, List<UUID>> friends = findFriendIds(cats.getContent());
+        return cats.map(cat -> convertToDto(cat, friends));
+    }
+
+    // An index range scan on (owner_id, id) for both the slice and the count.
+    @Transactional(readOnly = true)
+    public Page<CatDto> getCatsByOwner(UUID ownerId, Pageable pageable) {
+        Page<CatEntity> cats = catRepository.findByOwnerId(ownerId, pageable);
+        Map<UUID, List<UUID>> friends = findFriendIds(cats.getContent());
+        return cats.map(cat -> convertToDto(cat, friends));
+    }
+
+    // Each filter becomes a predicate of one query; the indexes on cats cover breed, color and birth date.
+    @Transactional(readOnly = true)
+    public Page<CatDto> searchCats(CatSearchRequest request) {
+        if (!SCROLL_KEYS.containsKey(request.getSortBy())) {
+            throw new IllegalArgumentException("Cannot sort cats by " + request.getSortBy());
+        }
+        Sort sort = Sort.by(Sort.Direction.fromString(request.getSortDir()), request.getSortBy()).and(Sort.by("id"));
+
+        Page<CatEntity> cats = catRepository.findAll(searchSpecification(request), PageRequest.of(request.getPage(), request.getSize(), sort));
+        Map<UUID, List<UUID>> friends = findFriendIds(cats.getContent());
+        return cats.map(cat -> convertToDto(cat, friends));
+    }
+
+    // Keyset listing: the cursor holds the last (sort key, id), so every slice costs one index range scan and no count.
+    @Transactional(readOnly = true)
+    public CursorPage<CatDto> scrollCats(ScrollRequest request) {
+        ScrollCursor cursor = request.getCursor() == null
+                ? ScrollCursor.first(request.getSortBy(), request.getSortDir())
+                : ScrollCursor.decode(request.getCursor());
+        if (!SCROLL_KEYS.containsKey(cursor.getSortBy())) {
+            throw new IllegalArgumentException("Cannot sort cats by " + cursor.getSortBy());
+        }
+        ScrollPosition position = cursor.toPosition(SCROLL_KEYS);
+
+        Window<CatEntity> window = catRepository.findBy(Specification.where(null), query -> query
+                .sortBy(cursor.toSort())
+                .limit(request.getSize())
+                .scroll(position));
+
+        String nextCursor = null;
+        if (window.hasNext() && !window.isEmpty()) {
+            ScrollPosition last = window.positionAt(window.size() - 1);
+            nextCursor = ScrollCursor.after(cursor.getSortBy(), cursor.getSortDir(), last).encode();
+        }
+        Long approximateTotal = request.isWithTotal() ? catRepository.estimateCount() : null;
+
+        return new CursorPage<>(
+                convertToDtos(window.getContent()),
+                nextCursor,
+                approximateTotal);
     }
 
     public boolean makeFriendsWith(UUID id1, UUID id2) {
@@ -75,19 +228,17 @@ public class CatService {
             return false;
         }
 
-        Optional<CatEntity> cat1Opt = catRepository.findById(id1);
-        Optional<CatEntity> cat2Opt = catRepository.findById(id2);
-        if (cat1Opt.isEmpty() || cat2Opt.isEmpty()) {
+        // Locked before anything is read, so a concurrent update or deletion of either cat has fully committed.
+        friendshipRepository.lockCats(List.of(id1, id2));
+        if (!catRepository.existsById(id1) || !catRepository.existsById(id2)) {
             return false;
         }
 
-        CatEntity cat1 = cat1Opt.get();
-        CatEntity cat2 = cat2Opt.get();
-
-        if (!cat1.getFriends().contains(cat2)) {
-            cat1.getFriends().add(cat2);
-            cat2.getFriends().add(cat1);
-            catRepository.saveAll(List.of(cat1, cat2));
+        if (friendshipRepository.add(id1, id2)) {
+            suggestionRepository.friendsAdded(id1, List.of(id2));
+            catEventPublisher.publishFriendship(CatEventType.FRIENDSHIP_ADDED, id1, null, id2);
+            catEventPublisher.publishFriendListChanged(id1);
+            catEventPublisher.publishFriendListChanged(id2);
         }
 
         return true;
@@ -98,88 +249,126 @@ public class CatService {
             return false;
         }
 
-        Optional<CatEntity> cat1Opt = catRepository.findById(id1);
-        Optional<CatEntity> cat2Opt = catRepository.findById(id2);
-        if (cat1Opt.isEmpty() || cat2Opt.isEmpty()) {
+        // Locked before anything is read, as in makeFriendsWith.
+        friendshipRepository.lockCats(List.of(id1, id2));
+        if (!catRepository.existsById(id1) || !catRepository.existsById(id2)) {
             return false;
         }
 
-        CatEntity cat1 = cat1Opt.get();
-        CatEntity cat2 = cat2Opt.get();
-
-        boolean hadFriendship = cat1.getFriends().contains(cat2);
+        boolean hadFriendship = friendshipRepository.remove(id1, id2);
 
         if (hadFriendship) {
-            cat1.getFriends().remove(cat2);
-            cat2.getFriends().remove(cat1);
-            catRepository.saveAll(List.of(cat1, cat2));
+            suggestionRepository.friendsRemoved(id1, List.of(id2));
+            catEventPublisher.publishFriendship(CatEventType.FRIENDSHIP_REMOVED, id1, null, id2);
+            catEventPublisher.publishFriendListChanged(id1);
+            catEventPublisher.publishFriendListChanged(id2);
         }
 
         return hadFriendship;
     }
 
     public void deleteCat(UUID id) {
-        Optional<CatEntity> catOpt = catRepository.findById(id);
+        // Locked before the row is read, as in applyUpdate, so the owner in the event is the current one.
+        lockWithFriends(List.of(id), List.of());
+        Optional<CatEntity> catOpt = catRepository.findForUpdate(id);
         if (catOpt.isEmpty()) {
             return;
         }
         CatEntity cat = catOpt.get();
-        for (CatEntity friend : cat.getFriends()) {
-            friend.getFriends().remove(cat);
-        }
-        cat.getFriends().clear();
-
-        catRepository.deleteById(id);
+        deleteLockedCats(List.of(id));
+        catEventPublisher.publish(CatEventType.DELETED, id, cat.getOwnerId());
     }
 
+    // Chunks of cats.delete.chunk-size cats, each in its own short transaction,
+    // so that an owner with many cats does not hold locks on cat_friends for the whole cascade.
+    // The owner is marked as being deleted first, so no cat can be added behind the chunks.
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void deleteCatsByOwner(UUID ownerId) {
-        catRepository.deleteByOwnerId(ownerId);
+        transactionTemplate.executeWithoutResult(status -> deletingOwnerRepository.markDeleting(ownerId));
+
+        long started = System.nanoTime();
+        int deleted = 0;
+        int chunk;
+        do {
+            chunk = transactionTemplate.execute(status -> {
+                List<UUID> catIds = catRepository.findIdsByOwnerId(ownerId, PageRequest.ofSize(deleteChunkSize));
+                if (catIds.isEmpty()) {
+                    return 0;
+                }
+                deleteCats(catIds);
+                for (UUID catId : catIds) {
+                    catEventPublisher.publish(CatEventType.DELETED, catId, ownerId);
+                }
+                return catIds.size();
+            });
+            deleted += chunk;
+        } while (chunk == deleteChunkSize);
+
+        if (deleted > 0) {
+            long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            log.info("Deleted {} cats of owner {} in {} ms ({} cats/s)", deleted, ownerId, millis, deleted * 1000L / millis);
+        }
     }
 
-    public Optional<CatDto> updateCat(CatDto catDto) {
-        Optional<CatEntity> catOpt = catRepository.findById(catDto.id);
-        if (catOpt.isEmpty()) {
+    // Like createCat, the (possibly new) owner is checked before the transaction begins.
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Optional<CatDto> updateCat(CatDto catDto) throws IOException {
+        if (!knownOwners.exists(catDto.ownerId)) {
             return Optional.empty();
         }
-        CatEntity cat = catOpt.get();
 
-        // Searching for a new owner
-        String correlationId = UUID.randomUUID().toString();
-        MessageProperties properties = new MessageProperties();
-        properties.setCorrelationId(correlationId);
-        properties.setReplyTo("owner.get.reply.queue");
-        Message getOwnerMessage = new Message(catDto.ownerId.toString().getBytes(), properties);
-        Message response = rabbitTemplate.sendAndReceive("owner.exchange", "owner.get", getOwnerMessage);
-        if (response == null) {
+        return transactionTemplate.execute(status -> applyUpdate(catDto));
+    }
+
+    private Optional<CatDto> applyUpdate(CatDto catDto) {
+        if (!deletingOwnerRepository.lockNotDeleting(List.of(catDto.ownerId))) {
             return Optional.empty();
         }
-
-        // If some or all ids are not found, no entities are returned for these IDs.
-        List<CatEntity> newFriends = catRepository.findAllById(catDto.friends);
-        // If not all friends are found:
-        if (newFriends.size() != catDto.friends.size()) {
+        Set<UUID> newFriendIds = new HashSet<>(catDto.friends);
+        if (newFriendIds.contains(catDto.id)) {
             return Optional.empty();
         }
-
-        if (catDto.friends.contains(catDto.id)) {
+        // The row is read under its lock, so the counters it held are the ones adjusted below.
+        lockWithFriends(List.of(catDto.id), newFriendIds);
+        Optional<CatEntity> catOpt = catRepository.findForUpdate(catDto.id);
+        if (catOpt.isEmpty()) {
             return Optional.empty();
         }
-
-        List<CatEntity> friendsToRemove = cat.getFriends().stream()
-                .filter(oldFriend -> !newFriends.contains(oldFriend))
-                .toList();
-        for (CatEntity oldFriendToRemove : friendsToRemove) {
-            deleteFriendshipWith(cat.getId(), oldFriendToRemove.getId());
+        CatEntity cat = catOpt.get();
+        Set<UUID> oldFriendIds = new HashSet<>(friendshipRepository.findFriendIds(cat.getId()));
+
+        Set<UUID> toAdd = new HashSet<>(newFriendIds);
+        toAdd.removeAll(oldFriendIds);
+        Set<UUID> toRemove = new HashSet<>(oldFriendIds);
+        toRemove.removeAll(newFriendIds);
+
+        // Only the cats whose friend lists change are loaded; if some of the new ones do not exist, nothing changes.
+        Set<UUID> changedIds = new HashSet<>(toAdd);
+        changedIds.addAll(toRemove);
+        List<CatEntity> changedFriends = catRepository.findAllById(changedIds);
+        if (changedFriends.size() != changedIds.size()) {
+            return Optional.empty();
         }
 
-        List<CatEntity> friendsToAdd = newFriends.stream()
-                .filter(newFriend -> !cat.getFriends().contains(newFriend))
-                .toList();
-        for (CatEntity newFriendToAdd : friendsToAdd) {
-            makeFriendsWith(cat.getId(), newFriendToAdd.getId());
+        if (!toRemove.isEmpty()) {
+            friendshipRepository.removeAll(cat.getId(), toRemove);
+            suggestionRepository.friendsRemoved(cat.getId(), toRemove);
+        }
+        if (!toAdd.isEmpty()) {
+            friendshipRepository.addAll(cat.getId(), toAdd);
+            suggestionRepository.friendsAdded(cat.getId(), toAdd);
+        }
+        for (UUID friendId : toRemove) {
+            catEventPublisher.publishFriendship(CatEventType.FRIENDSHIP_REMOVED, cat.getId(), cat.getOwnerId(), friendId);
+        }
+        for (UUID friendId : toAdd) {
+            catEventPublisher.publishFriendship(CatEventType.FRIENDSHIP_ADDED, cat.getId(), cat.getOwnerId(), friendId);
+        }
+        for (UUID friendId : changedIds) {
+            catEventPublisher.publishFriendListChanged(friendId);
         }
 
-        cat.setFriends(newFriends);
+        List<CatCounterId> oldCounters = countersOf(List.of(cat));
         cat.setName(catDto.name);
         cat.setBirthDate(catDto.dateOfBirth);
         cat.setBreed(catDto.breed);
@@ -187,11 +376,124 @@ public class CatService {
         cat.setOwnerId(catDto.ownerId);
 
         CatEntity updatedCat = catRepository.save(cat);
+        adjustCounters(oldCounters, countersOf(List.of(updatedCat)));
+        catEventPublisher.publish(CatEventType.UPDATED, updatedCat.getId(), updatedCat.getOwnerId());
+
+        return Optional.of(new CatDto(
+                updatedCat.getId(),
+                updatedCat.getName(),
+                updatedCat.getBirthDate(),
+                updatedCat.getBreed(),
+                updatedCat.getColor(),
+                updatedCat.getOwnerId(),
+                new ArrayList<>(newFriendIds)));
+    }
+
+    // Counters that are both removed and added (an update that kept the color, say) cancel out and are not written.
+    private void adjustCounters(List<CatCounterId> removed, List<CatCounterId> added) {
+        Map<CatCounterId, Long> deltas = new HashMap<>();
+        removed.forEach(counter -> deltas.merge(counter, -1L, Long::sum));
+        added.forEach(counter -> deltas.merge(counter, 1L, Long::sum));
+        catCounterRepository.adjust(deltas);
+    }
 
-        return Optional.of(convertToDto(updatedCat));
+    // The counter rows the cats are counted in; keep in sync with CatCounterRepository.catsRemoved and the pets V6 migration.
+    private static List<CatCounterId> countersOf(List<CatEntity> cats) {
+        List<CatCounterId> counters = new ArrayList<>(cats.size() * 3);
+        for (CatEntity cat : cats) {
+            counters.add(new CatCounterId(CatCounterRepository.COLOR, cat.getColor() == null ? "" : cat.getColor().name()));
+            counters.add(new CatCounterId(CatCounterRepository.BREED, cat.getBreed()));
+            counters.add(new CatCounterId(CatCounterRepository.OWNER, cat.getOwnerId().toString()));
+        }
+        return counters;
+    }
+
+    private static Specification<CatEntity> searchSpecification(CatSearchRequest request) {
+        List<Specification<CatEntity>> filters = new ArrayList<>();
+        if (request.getNamePrefix() != null && !request.getNamePrefix().isEmpty()) {
+            String pattern = escapeLike(request.getNamePrefix()) + "%";
+            filters.add((root, query, cb) -> cb.like(root.get("name"), pattern, '\\'));
+        }
+        if (request.getBreed() != null && !request.getBreed().isEmpty()) {
+            filters.add((root, query, cb) -> cb.equal(root.get("breed"), request.getBreed()));
+        }
+        if (request.getColor() != null) {
+            filters.add((root, query, cb) -> cb.equal(root.get("color"), request.getColor()));
+        }
+        if (request.getBornFrom() != null) {
+            filters.add((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("birthDate"), request.getBornFrom()));
+        }
+        if (request.getBornTo() != null) {
+            filters.add((root, query, cb) -> cb.lessThanOrEqualTo(root.get("birthDate"), request.getBornTo()));
+        }
+        return Specification.allOf(filters);
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    // A fixed number of set based statements, however many cats and edges are involved.
+    private void deleteCats(List<UUID> catIds) {
+        lockWithFriends(catIds, List.of());
+        deleteLockedCats(catIds);
+    }
+
+    private void deleteLockedCats(List<UUID> catIds) {
+        for (UUID friendId : friendshipRepository.findOutsideFriends(catIds)) {
+            // The former friend's friend list changes as well.
+            catEventPublisher.publishFriendListChanged(friendId);
+        }
+        suggestionRepository.catsRemoved(catIds);
+        catCounterRepository.catsRemoved(catIds);
+        friendshipRepository.removeAll(catIds);
+        catRepository.deleteAllByIdInBatch(catIds);
+    }
+
+    // Locks the cats, the other cats given and all current friends of the cats, so that every edge the caller
+    // may change has both ends locked. A cat's friends cannot change once it is locked, but one may have been
+    // added between the first read and the lock; such newcomers are locked in a second, rarely needed pass.
+    private void lockWithFriends(Collection<UUID> catIds, Collection<UUID> otherIds) {
+        Set<UUID> locked = new HashSet<>(catIds);
+        locked.addAll(otherIds);
+        locked.addAll(friendIdsOf(catIds));
+        friendshipRepository.lockCats(locked);
+
+        Set<UUID> friends = friendIdsOf(catIds);
+        if (!locked.containsAll(friends)) {
+            friendshipRepository.lockCats(friends);
+        }
+    }
+
+    private Set<UUID> friendIdsOf(Collection<UUID> catIds) {
+        Set<UUID> friendIds = new HashSet<>();
+        for (FriendLink link : friendshipRepository.findFriendLinks(catIds)) {
+            friendIds.add(link.friendId());
+        }
+        return friendIds;
+    }
+
+    // Read paths: the friend ids of all cats come from one query instead of one lazy collection load per cat.
+    private List<CatDto> convertToDtos(List<CatEntity> cats) {
+        Map<UUID, List<UUID>> friends = findFriendIds(cats);
+        return cats.stream()
+                .map(cat -> convertToDto(cat, friends))
+                .toList();
+    }
+
+    private Map<UUID, List<UUID>> findFriendIds(List<CatEntity> cats) {
+        Map<UUID, List<UUID>> friends = new HashMap<>();
+        if (cats.isEmpty()) {
+            return friends;
+        }
+        List<UUID> catIds = cats.stream().map(CatEntity::getId).toList();
+        for (FriendLink link : friendshipRepository.findFriendLinks(catIds)) {
+            friends.computeIfAbsent(link.catId(), id -> new ArrayList<>()).add(link.friendId());
+        }
+        return friends;
     }
 
-    private CatDto convertToDto(CatEntity catEntity) {
+    private CatDto convertToDto(CatEntity catEntity, Map<UUID, List<UUID>> friends) {
         return new CatDto(
                 catEntity.getId(),
                 catEntity.getName(),
@@ -199,9 +501,7 @@ public class CatService {
                 catEntity.getBreed(),
                 catEntity.getColor(),
                 catEntity.getOwnerId(),
-                catEntity.getFriends().stream()
-                        .map(CatEntity::getId)
-                        .collect(Collectors.toList())
+                friends.getOrDefault(catEntity.getId(), new ArrayList<>())
         );
     }
-}
\ No newline at end of file
+}
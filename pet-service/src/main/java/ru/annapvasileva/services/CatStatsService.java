@@ -0,0 +1,37 @@
+package ru.annapvasileva.services;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.annapvasileva.cats.CatStatsDto;
+import ru.annapvasileva.persistence.CatCounterRepository;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Cat counts by color, breed and owner. CatService keeps cat_counters current,
+ * so a request reads a handful of counter rows however many cats there are.
+ * Cats that existed before the table are counted by the migration that creates it.
+ */
+@Service
+public class CatStatsService {
+    private final CatCounterRepository catCounterRepository;
+
+    public CatStatsService(CatCounterRepository catCounterRepository) {
+        this.catCounterRepository = catCounterRepository;
+    }
+
+    @Transactional(readOnly = true)
+    public CatStatsDto getStats(UUID ownerId) {
+        Map<String, Long> byColor = catCounterRepository.findCounts(CatCounterRepository.COLOR);
+        Map<String, Long> byBreed = catCounterRepository.findCounts(CatCounterRepository.BREED);
+        // Every cat has exactly one color row, including the ones without a color.
+        long total = byColor.values().stream().mapToLong(Long::longValue).sum();
+        byColor.remove("");
+        Long ownerCats = ownerId == null
+                ? null
+                : catCounterRepository.findCount(CatCounterRepository.OWNER, ownerId.toString()).orElse(0L);
+
+        return new CatStatsDto(total, byColor, byBreed, ownerCats);
+    }
+}
@@ -0,0 +1,507 @@
+package ru.annapvasileva.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.annapvasileva.cats.CatEvent;
+import ru.annapvasileva.persistence.FriendshipRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Friendship graph of all cats, kept in memory for graph queries.
+ * Cats are mapped to dense ints and the adjacency is stored CSR style: one offsets array and one targets array
+ * with the friends of every cat sorted. Cats changed since the last rebuild keep their own sorted array
+ * until there are enough of them to rebuild the CSR arrays. Queries read adjacency ranges in place and allocate
+ * nothing per visited cat.
+ * Built from cat_friends on startup, then kept current by the friendship and deletion events.
+ */
+@Component
+public class FriendGraphIndex {
+    private static final Logger log = LoggerFactory.getLogger(FriendGraphIndex.class);
+    private static final int[] NO_FRIENDS = new int[0];
+    private static final int[][] NO_CHANGES = new int[0][];
+
+    private final FriendshipRepository friendshipRepository;
+    private final int maxChangedNodes;
+    private final StampedLock lock = new StampedLock();
+
+    // Everything below is guarded by lock.
+    private NodeIds ids = new NodeIds();
+    private int[] offsets = {0};
+    private int[] targets = NO_FRIENDS;
+    // Own sorted friend arrays of the cats changed since the last rebuild, indexed by node, null for the others.
+    private int[][] changed = NO_CHANGES;
+    private int changedCount;
+    // Non-null while the graph is being loaded; these events are applied again on top of the loaded graph.
+    private List<CatEvent> eventsDuringLoad;
+
+    public FriendGraphIndex(
+            FriendshipRepository friendshipRepository,
+            @Value("${cats.friend-graph.max-changed-nodes:100000}") int maxChangedNodes) {
+        this.friendshipRepository = friendshipRepository;
+        this.maxChangedNodes = maxChangedNodes;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long stamp = lock.writeLock();
+        try {
+            eventsDuringLoad = new ArrayList<>();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+
+        long started = System.nanoTime();
+        NodeIds loadedIds = new NodeIds();
+        EdgeList edges = new EdgeList();
+        try {
+            friendshipRepository.forEachEdge((first, second) ->
+                    edges.add(loadedIds.getOrAdd(first), loadedIds.getOrAdd(second)));
+        } catch (RuntimeException e) {
+            stamp = lock.writeLock();
+            try {
+                eventsDuringLoad = null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            throw e;
+        }
+        int[] loadedOffsets = new int[loadedIds.size() + 1];
+        int[] loadedTargets = edges.toCsr(loadedOffsets);
+
+        stamp = lock.writeLock();
+        try {
+            ids = loadedIds;
+            offsets = loadedOffsets;
+            targets = loadedTargets;
+            changed = NO_CHANGES;
+            changedCount = 0;
+            List<CatEvent> missed = eventsDuringLoad;
+            eventsDuringLoad = null;
+            // Edge events are idempotent, so replaying ones already contained in the snapshot is harmless.
+            missed.forEach(this::applyLocked);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        log.info("Loaded friend graph with {} cats and {} edges in {} ms",
+                loadedIds.size(), loadedTargets.length / 2, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    public void apply(CatEvent event) {
+        long stamp = lock.writeLock();
+        try {
+            if (eventsDuringLoad != null) {
+                eventsDuringLoad.add(event);
+            }
+            applyLocked(event);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public List<UUID> friends(UUID catId) {
+        long stamp = lock.readLock();
+        try {
+            int cat = ids.get(catId);
+            if (cat < 0) {
+                return List.of();
+            }
+            Range range = neighbors(cat, new Range());
+            List<UUID> friends = new ArrayList<>(range.end - range.start);
+            for (int i = range.start; i < range.end; i++) {
+                friends.add(ids.uuid(range.array[i]));
+            }
+            return friends;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public List<UUID> mutualFriends(UUID catId1, UUID catId2) {
+        long stamp = lock.readLock();
+        try {
+            int cat1 = ids.get(catId1);
+            int cat2 = ids.get(catId2);
+            if (cat1 < 0 || cat2 < 0) {
+                return List.of();
+            }
+            Range friends1 = neighbors(cat1, new Range());
+            Range friends2 = neighbors(cat2, new Range());
+
+            List<UUID> mutual = new ArrayList<>();
+            int i = friends1.start;
+            int j = friends2.start;
+            while (i < friends1.end && j < friends2.end) {
+                int friend1 = friends1.array[i];
+                int friend2 = friends2.array[j];
+                if (friend1 < friend2) {
+                    i++;
+                } else if (friend1 > friend2) {
+                    j++;
+                } else {
+                    mutual.add(ids.uuid(friend1));
+                    i++;
+                    j++;
+                }
+            }
+            return mutual;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Cats exactly two steps away, at most limit of them.
+    public List<UUID> friendsOfFriends(UUID catId, int limit) {
+        long stamp = lock.readLock();
+        try {
+            int cat = ids.get(catId);
+            if (cat < 0) {
+                return List.of();
+            }
+            Range friends = neighbors(cat, new Range());
+            BitSet seen = new BitSet(ids.size());
+            seen.set(cat);
+            for (int i = friends.start; i < friends.end; i++) {
+                seen.set(friends.array[i]);
+            }
+
+            List<UUID> result = new ArrayList<>();
+            Range candidates = new Range();
+            for (int i = friends.start; i < friends.end; i++) {
+                neighbors(friends.array[i], candidates);
+                for (int j = candidates.start; j < candidates.end; j++) {
+                    int candidate = candidates.array[j];
+                    if (!seen.get(candidate)) {
+                        seen.set(candidate);
+                        result.add(ids.uuid(candidate));
+                        if (result.size() >= limit) {
+                            return result;
+                        }
+                    }
+                }
+            }
+            return result;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Length of the shortest friendship chain between two cats, empty if there is none within maxDepth.
+    public OptionalInt separation(UUID catId1, UUID catId2, int maxDepth) {
+        if (catId1.equals(catId2)) {
+            return OptionalInt.of(0);
+        }
+        long stamp = lock.readLock();
+        try {
+            int cat1 = ids.get(catId1);
+            int cat2 = ids.get(catId2);
+            if (cat1 < 0 || cat2 < 0) {
+                return OptionalInt.empty();
+            }
+
+            // Bidirectional BFS: always expand the smaller frontier by one full level.
+            BitSet seen1 = new BitSet(ids.size());
+            BitSet seen2 = new BitSet(ids.size());
+            seen1.set(cat1);
+            seen2.set(cat2);
+            int[] frontier1 = {cat1};
+            int[] frontier2 = {cat2};
+            Range range = new Range();
+            int depth = 0;
+            while (frontier1.length > 0 && frontier2.length > 0 && depth < maxDepth) {
+                boolean expandFirst = frontier1.length <= frontier2.length;
+                int[] frontier = expandFirst ? frontier1 : frontier2;
+                BitSet seen = expandFirst ? seen1 : seen2;
+                BitSet seenByOther = expandFirst ? seen2 : seen1;
+
+                int[] next = new int[16];
+                int nextSize = 0;
+                for (int node : frontier) {
+                    neighbors(node, range);
+                    for (int i = range.start; i < range.end; i++) {
+                        int neighbor = range.array[i];
+                        if (seenByOther.get(neighbor)) {
+                            return OptionalInt.of(depth + 1);
+                        }
+                        if (!seen.get(neighbor)) {
+                            seen.set(neighbor);
+                            if (nextSize == next.length) {
+                                next = Arrays.copyOf(next, nextSize * 2);
+                            }
+                            next[nextSize++] = neighbor;
+                        }
+                    }
+                }
+                next = Arrays.copyOf(next, nextSize);
+                if (expandFirst) {
+                    frontier1 = next;
+                } else {
+                    frontier2 = next;
+                }
+                depth++;
+            }
+            return OptionalInt.empty();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void applyLocked(CatEvent event) {
+        switch (event.getType()) {
+            case FRIENDSHIP_ADDED -> addEdge(event.getCatId(), event.getFriendId());
+            case FRIENDSHIP_REMOVED -> removeEdge(event.getCatId(), event.getFriendId());
+            case DELETED -> removeNode(event.getCatId());
+            default -> {
+                return;
+            }
+        }
+        if (changedCount > maxChangedNodes) {
+            rebuild();
+        }
+    }
+
+    private void addEdge(UUID catId1, UUID catId2) {
+        int cat1 = ids.getOrAdd(catId1);
+        int cat2 = ids.getOrAdd(catId2);
+        setFriends(cat1, withNode(friendsOf(cat1), cat2));
+        setFriends(cat2, withNode(friendsOf(cat2), cat1));
+    }
+
+    private void removeEdge(UUID catId1, UUID catId2) {
+        int cat1 = ids.get(catId1);
+        int cat2 = ids.get(catId2);
+        if (cat1 < 0 || cat2 < 0) {
+            return;
+        }
+        setFriends(cat1, withoutNode(friendsOf(cat1), cat2));
+        setFriends(cat2, withoutNode(friendsOf(cat2), cat1));
+    }
+
+    // The int id of a deleted cat is kept; it simply has no friends anymore.
+    private void removeNode(UUID catId) {
+        int cat = ids.get(catId);
+        if (cat < 0) {
+            return;
+        }
+        for (int friend : friendsOf(cat)) {
+            setFriends(friend, withoutNode(friendsOf(friend), cat));
+        }
+        setFriends(cat, NO_FRIENDS);
+    }
+
+    // Folds the changed cats back into fresh CSR arrays.
+    private void rebuild() {
+        int nodeCount = ids.size();
+        Range range = new Range();
+        int[] newOffsets = new int[nodeCount + 1];
+        for (int node = 0; node < nodeCount; node++) {
+            neighbors(node, range);
+            newOffsets[node + 1] = newOffsets[node] + range.end - range.start;
+        }
+        int[] newTargets = new int[newOffsets[nodeCount]];
+        for (int node = 0; node < nodeCount; node++) {
+            neighbors(node, range);
+            System.arraycopy(range.array, range.start, newTargets, newOffsets[node], range.end - range.start);
+        }
+        offsets = newOffsets;
+        targets = newTargets;
+        changed = NO_CHANGES;
+        changedCount = 0;
+    }
+
+    // Points the range at the sorted friends of the node, without copying them.
+    private Range neighbors(int node, Range range) {
+        int[] friends = node < changed.length ? changed[node] : null;
+        if (friends != null) {
+            range.array = friends;
+            range.start = 0;
+            range.end = friends.length;
+        } else if (node + 1 >= offsets.length) {
+            range.array = NO_FRIENDS;
+            range.start = 0;
+            range.end = 0;
+        } else {
+            range.array = targets;
+            range.start = offsets[node];
+            range.end = offsets[node + 1];
+        }
+        return range;
+    }
+
+    // A copy of the friends that writers can change; only used when applying events.
+    private int[] friendsOf(int node) {
+        Range range = neighbors(node, new Range());
+        if (range.array != targets) {
+            return range.array;
+        }
+        return Arrays.copyOfRange(targets, range.start, range.end);
+    }
+
+    private void setFriends(int node, int[] friends) {
+        if (node >= changed.length) {
+            changed = Arrays.copyOf(changed, Math.max(ids.size(), 2 * changed.length));
+        }
+        if (changed[node] == null) {
+            changedCount++;
+        }
+        changed[node] = friends;
+    }
+
+    private static int[] withNode(int[] sorted, int node) {
+        int index = Arrays.binarySearch(sorted, node);
+        if (index >= 0) {
+            return sorted;
+        }
+        int insertAt = -index - 1;
+        int[] result = new int[sorted.length + 1];
+        System.arraycopy(sorted, 0, result, 0, insertAt);
+        result[insertAt] = node;
+        System.arraycopy(sorted, insertAt, result, insertAt + 1, sorted.length - insertAt);
+        return result;
+    }
+
+    private static int[] withoutNode(int[] sorted, int node) {
+        int index = Arrays.binarySearch(sorted, node);
+        if (index < 0) {
+            return sorted;
+        }
+        int[] result = new int[sorted.length - 1];
+        System.arraycopy(sorted, 0, result, 0, index);
+        System.arraycopy(sorted, index + 1, result, index, sorted.length - index - 1);
+        return result;
+    }
+
+    // Friends of one node: array[start, end). Reused across nodes by the queries.
+    private static final class Range {
+        private int[] array;
+        private int start;
+        private int end;
+    }
+
+    /**
+     * UUID -> dense int mapping. Open addressing over flat long arrays, and the reverse direction
+     * is another flat array indexed by the int, so no per-cat objects are kept.
+     */
+    private static final class NodeIds {
+        private long[] keys = new long[2 * 1024];
+        // Node id + 1 for every slot, 0 marks a free slot.
+        private int[] slots = new int[1024];
+        private long[] uuids = new long[2 * 1024];
+        private int size;
+
+        int get(UUID id) {
+            long msb = id.getMostSignificantBits();
+            long lsb = id.getLeastSignificantBits();
+            int mask = slots.length - 1;
+            int slot = hash(msb, lsb) & mask;
+            while (slots[slot] != 0) {
+                if (keys[2 * slot] == msb && keys[2 * slot + 1] == lsb) {
+                    return slots[slot] - 1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        int getOrAdd(UUID id) {
+            int node = get(id);
+            if (node >= 0) {
+                return node;
+            }
+            if ((size + 1) * 4L > slots.length * 3L) {
+                resize();
+            }
+            node = size++;
+            if (2 * node >= uuids.length) {
+                uuids = Arrays.copyOf(uuids, uuids.length * 2);
+            }
+            uuids[2 * node] = id.getMostSignificantBits();
+            uuids[2 * node + 1] = id.getLeastSignificantBits();
+            insert(id.getMostSignificantBits(), id.getLeastSignificantBits(), node);
+            return node;
+        }
+
+        UUID uuid(int node) {
+            return new UUID(uuids[2 * node], uuids[2 * node + 1]);
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void insert(long msb, long lsb, int node) {
+            int mask = slots.length - 1;
+            int slot = hash(msb, lsb) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            keys[2 * slot] = msb;
+            keys[2 * slot + 1] = lsb;
+            slots[slot] = node + 1;
+        }
+
+        private void resize() {
+            keys = new long[keys.length * 2];
+            slots = new int[slots.length * 2];
+            for (int node = 0; node < size; node++) {
+                insert(uuids[2 * node], uuids[2 * node + 1], node);
+            }
+        }
+
+        private static int hash(long msb, long lsb) {
+            long h = msb ^ lsb;
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            return (int) h;
+        }
+    }
+
+    // Growable pair of int arrays for the directed rows read on startup.
+    private static final class EdgeList {
+        private int[] from = new int[1024];
+        private int[] to = new int[1024];
+        private int size;
+
+        void add(int first, int second) {
+            if (size == from.length) {
+                from = Arrays.copyOf(from, size * 2);
+                to = Arrays.copyOf(to, size * 2);
+            }
+            from[size] = first;
+            to[size] = second;
+            size++;
+        }
+
+        // Counting sort by source into offsets/targets, then every adjacency range is sorted.
+        int[] toCsr(int[] offsets) {
+            int nodeCount = offsets.length - 1;
+            for (int i = 0; i < size; i++) {
+                offsets[from[i] + 1]++;
+            }
+            for (int node = 0; node < nodeCount; node++) {
+                offsets[node + 1] += offsets[node];
+            }
+            int[] targets = new int[size];
+            int[] next = Arrays.copyOf(offsets, nodeCount);
+            for (int i = 0; i < size; i++) {
+                targets[next[from[i]]++] = to[i];
+            }
+            for (int node = 0; node < nodeCount; node++) {
+                Arrays.sort(targets, offsets[node], offsets[node + 1]);
+            }
+            return targets;
+        }
+    }
+}
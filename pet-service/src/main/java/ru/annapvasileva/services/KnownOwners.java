@@ -0,0 +1,83 @@
+package ru.annapvasileva.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.stereotype.Component;
+import ru.annapvasileva.util.OperationFailedException;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ids of the owners this instance knows to exist, so that cat writes can check an owner without an RPC.
+ * Fed by owner created/deleted events; owners created before the instance started are learned
+ * from an owner.getBatch call the first time they are not found here. If that call is not answered,
+ * the check fails with OperationFailedException rather than reporting the owners as missing.
+ */
+@Component
+public class KnownOwners {
+    private final RabbitTemplate rabbitTemplate;
+    private final ObjectMapper objectMapper;
+    private final Set<UUID> ownerIds = ConcurrentHashMap.newKeySet();
+    // Bumped on every removal so that an RPC answer older than it does not bring a deleted owner back.
+    private final AtomicLong removals = new AtomicLong();
+
+    public KnownOwners(RabbitTemplate rabbitTemplate, ObjectMapper objectMapper) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    public boolean exists(UUID ownerId) throws IOException {
+        return existing(Set.of(ownerId)).contains(ownerId);
+    }
+
+    // The subset of ownerIds that exist. Only the unknown ones are asked for, in one request.
+    public Set<UUID> existing(Set<UUID> ownerIds) throws IOException {
+        Set<UUID> existing = new HashSet<>();
+        Set<UUID> unknown = new HashSet<>();
+        for (UUID ownerId : ownerIds) {
+            (this.ownerIds.contains(ownerId) ? existing : unknown).add(ownerId);
+        }
+        if (unknown.isEmpty()) {
+            return existing;
+        }
+
+        long generation = removals.get();
+        Set<UUID> found = fetchExisting(unknown);
+        if (removals.get() == generation) {
+            this.ownerIds.addAll(found);
+        }
+        existing.addAll(found);
+        return existing;
+    }
+
+    public void add(UUID ownerId) {
+        ownerIds.add(ownerId);
+    }
+
+    public void remove(UUID ownerId) {
+        removals.incrementAndGet();
+        ownerIds.remove(ownerId);
+    }
+
+    private Set<UUID> fetchExisting(Set<UUID> ownerIds) throws IOException {
+        Message getOwnersMessage = new Message(objectMapper.writeValueAsBytes(ownerIds), new MessageProperties());
+        Message response = rabbitTemplate.sendAndReceive("owner.exchange", "owner.getBatch", getOwnersMessage);
+        if (response == null) {
+            throw new OperationFailedException("Owner service did not answer owner.getBatch");
+        }
+
+        Set<UUID> existing = new HashSet<>();
+        for (JsonNode owner : objectMapper.readTree(response.getBody())) {
+            existing.add(UUID.fromString(owner.get("id").asText()));
+        }
+        return existing;
+    }
+}
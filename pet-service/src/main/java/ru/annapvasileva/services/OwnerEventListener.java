@@ -0,0 +1,31 @@
+package ru.annapvasileva.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+import ru.annapvasileva.owners.OwnerEvent;
+import ru.annapvasileva.owners.OwnerEventType;
+
+@Component
+public class OwnerEventListener {
+    private final ObjectMapper objectMapper;
+    private final KnownOwners knownOwners;
+
+    public OwnerEventListener(ObjectMapper objectMapper, KnownOwners knownOwners) {
+        this.objectMapper = objectMapper;
+        this.knownOwners = knownOwners;
+    }
+
+    // One consumer, so a CREATED is never applied after the DELETION_REQUESTED that followed it.
+    @RabbitListener(queues = "#{ownerEventQueue.name}", concurrency = "1")
+    public void handleOwnerEvent(Message message) throws Exception {
+        OwnerEvent event = objectMapper.readValue(message.getBody(), OwnerEvent.class);
+
+        if (event.getType() == OwnerEventType.CREATED) {
+            knownOwners.add(event.getOwnerId());
+        } else if (event.getType() == OwnerEventType.DELETION_REQUESTED || event.getType() == OwnerEventType.DELETED) {
+            knownOwners.remove(event.getOwnerId());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ru.annapvasileva.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.annapvasileva.cats.CatSuggestionDto;
+import ru.annapvasileva.persistence.SuggestionRepository;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * "Cats your cat may know". The common friend counts live in cat_suggestions and are kept current by CatService;
+ * the top entries per cat are served from memory and dropped when a friendship event touches the cat.
+ * Friendships that existed before the table are counted by the migration that creates it.
+ */
+@Service
+public class SuggestionService {
+    private final SuggestionRepository suggestionRepository;
+    private final int topK;
+    // Least recently used order; guarded by itself.
+    private final Map<UUID, List<CatSuggestionDto>> topByCat;
+    // Bumped on every invalidation so that a list read before it is not cached.
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public SuggestionService(
+            SuggestionRepository suggestionRepository,
+            @Value("${cats.suggestions.top-k:20}") int topK,
+            @Value("${cats.suggestions.cache-size:100000}") int cacheSize) {
+        this.suggestionRepository = suggestionRepository;
+        this.topK = topK;
+        this.topByCat = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, List<CatSuggestionDto>> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    public List<CatSuggestionDto> getSuggestions(UUID catId, int limit) {
+        List<CatSuggestionDto> top;
+        synchronized (topByCat) {
+            top = topByCat.get(catId);
+        }
+        if (top == null) {
+            long generation = invalidations.get();
+            top = suggestionRepository.findTop(catId, topK);
+            synchronized (topByCat) {
+                if (invalidations.get() == generation) {
+                    topByCat.put(catId, top);
+                }
+            }
+        }
+        return top.subList(0, Math.min(limit, top.size()));
+    }
+
+    public void invalidate(Collection<UUID> catIds) {
+        invalidations.incrementAndGet();
+        synchronized (topByCat) {
+            catIds.forEach(topByCat::remove);
+        }
+    }
+}
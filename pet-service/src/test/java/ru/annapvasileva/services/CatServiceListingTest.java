@@ -0,0 +1,122 @@
+package ru.annapvasileva.services;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import ru.annapvasileva.cats.CatDto;
+import ru.annapvasileva.cats.CatSearchRequest;
+import ru.annapvasileva.persistence.CatEntity;
+import ru.annapvasileva.persistence.CatRepository;
+import ru.annapvasileva.persistence.FriendLink;
+import ru.annapvasileva.persistence.FriendshipRepository;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Every listed page costs one cats query and one friend id query, however many cats it holds.
+class CatServiceListingTest {
+    private static final int PAGE_SIZE = 50;
+
+    private final UUID ownerId = UUID.randomUUID();
+    private final List<CatEntity> cats = new ArrayList<>();
+    private final List<String> catQueries = new ArrayList<>();
+    private final List<String> friendStatements = new ArrayList<>();
+    private final CatService catService;
+
+    CatServiceListingTest() {
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            CatEntity cat = new CatEntity();
+            cat.setId(UUID.randomUUID());
+            cat.setName("cat" + i);
+            cat.setBirthDate(LocalDate.of(2020, 1, 1));
+            cat.setBreed("siamese");
+            cat.setOwnerId(ownerId);
+            cats.add(cat);
+        }
+        // The first cat is friends with all others.
+        List<FriendLink> links = new ArrayList<>();
+        for (CatEntity cat : cats.subList(1, cats.size())) {
+            links.add(new FriendLink(cats.get(0).getId(), cat.getId()));
+            links.add(new FriendLink(cat.getId(), cats.get(0).getId()));
+        }
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> List<T> query(String sql, PreparedStatementSetter pss, RowMapper<T> rowMapper) {
+                friendStatements.add(sql);
+                return (List<T>) links;
+            }
+        };
+        catService = new CatService(
+                catRepository(), new FriendshipRepository(jdbcTemplate, 1), null, null, null, null, null, null, 1000);
+    }
+
+    @Test
+    void getAllCatsReadsFriendIdsOnce() {
+        Page<CatDto> page = catService.getAllCats(PageRequest.of(0, PAGE_SIZE));
+
+        assertPageLoadedWithTwoQueries(page.getContent());
+    }
+
+    @Test
+    void getCatsByOwnerReadsFriendIdsOnce() {
+        Page<CatDto> page = catService.getCatsByOwner(ownerId, PageRequest.of(0, PAGE_SIZE));
+
+        assertPageLoadedWithTwoQueries(page.getContent());
+    }
+
+    @Test
+    void searchCatsReadsFriendIdsOnce() {
+        CatSearchRequest request = new CatSearchRequest();
+        request.setBreed("siamese");
+        request.setSize(PAGE_SIZE);
+        request.setSortBy("name");
+        request.setSortDir("asc");
+
+        Page<CatDto> page = catService.searchCats(request);
+
+        assertPageLoadedWithTwoQueries(page.getContent());
+    }
+
+    @Test
+    void getCatsReadsFriendIdsOnce() {
+        List<CatDto> found = catService.getCats(cats.stream().map(CatEntity::getId).toList());
+
+        assertPageLoadedWithTwoQueries(found);
+    }
+
+    private void assertPageLoadedWithTwoQueries(List<CatDto> page) {
+        assertThat(page).hasSize(PAGE_SIZE);
+        assertThat(catQueries).hasSize(1);
+        assertThat(friendStatements).hasSize(1);
+        assertThat(friendStatements.get(0)).contains("first_cat_id = any(?)");
+        assertThat(page.get(0).friends).hasSize(PAGE_SIZE - 1);
+        assertThat(page.get(1).friends).containsExactly(cats.get(0).getId());
+    }
+
+    // Answers the page queries with all cats and records each call.
+    private CatRepository catRepository() {
+        return (CatRepository) Proxy.newProxyInstance(
+                CatRepository.class.getClassLoader(),
+                new Class<?>[]{CatRepository.class},
+                (proxy, method, args) -> {
+                    catQueries.add(method.getName());
+                    return switch (method.getName()) {
+                        case "findAll", "findByOwnerId" -> new PageImpl<>(cats, (Pageable) args[args.length - 1], cats.size());
+                        case "findAllById" -> cats;
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    };
+                });
+    }
+}
@@ -0,0 +1,112 @@
+package ru.annapvasileva.services;
+
+import org.junit.jupiter.api.Test;
+import ru.annapvasileva.cats.CatEvent;
+import ru.annapvasileva.cats.CatEventType;
+import ru.annapvasileva.persistence.FriendshipRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FriendGraphIndexTest {
+    private final UUID a = UUID.randomUUID();
+    private final UUID b = UUID.randomUUID();
+    private final UUID c = UUID.randomUUID();
+    private final UUID d = UUID.randomUUID();
+    private final UUID e = UUID.randomUUID();
+
+    @Test
+    void answersFromTheLoadedEdges() {
+        // a - b - c - d, and a - e - c
+        FriendGraphIndex index = loaded(100, a, b, b, c, c, d, a, e, e, c);
+
+        assertThat(index.friends(b)).containsExactlyInAnyOrder(a, c);
+        assertThat(index.mutualFriends(a, c)).containsExactlyInAnyOrder(b, e);
+        assertThat(index.friendsOfFriends(a, 10)).containsExactly(c);
+        assertThat(index.separation(a, d, 6)).isEqualTo(OptionalInt.of(3));
+        assertThat(index.separation(a, a, 6)).isEqualTo(OptionalInt.of(0));
+        assertThat(index.separation(a, d, 2)).isEmpty();
+    }
+
+    @Test
+    void appliesEventsOnTopOfTheLoadedGraph() {
+        FriendGraphIndex index = loaded(100, a, b, b, c);
+
+        index.apply(new CatEvent(CatEventType.FRIENDSHIP_ADDED, a, null, d));
+        index.apply(new CatEvent(CatEventType.FRIENDSHIP_REMOVED, b, null, c));
+
+        assertThat(index.friends(a)).containsExactlyInAnyOrder(b, d);
+        assertThat(index.friends(c)).isEmpty();
+        assertThat(index.separation(a, c, 6)).isEmpty();
+        assertThat(index.separation(b, d, 6)).isEqualTo(OptionalInt.of(2));
+    }
+
+    @Test
+    void deletedCatLosesAllItsFriends() {
+        FriendGraphIndex index = loaded(100, a, b, a, c, b, c);
+
+        index.apply(new CatEvent(CatEventType.DELETED, a, null));
+
+        assertThat(index.friends(a)).isEmpty();
+        assertThat(index.friends(b)).containsExactly(c);
+        assertThat(index.mutualFriends(b, c)).isEmpty();
+    }
+
+    @Test
+    void givesTheSameAnswersAfterARebuild() {
+        // A single changed cat is enough to trigger a rebuild of the CSR arrays.
+        FriendGraphIndex index = loaded(0, a, b);
+
+        index.apply(new CatEvent(CatEventType.FRIENDSHIP_ADDED, b, null, c));
+        index.apply(new CatEvent(CatEventType.FRIENDSHIP_ADDED, c, null, d));
+        index.apply(new CatEvent(CatEventType.FRIENDSHIP_ADDED, d, null, e));
+
+        assertThat(index.friends(c)).containsExactlyInAnyOrder(b, d);
+        assertThat(index.friendsOfFriends(c, 10)).containsExactlyInAnyOrder(a, e);
+        assertThat(index.separation(a, e, 6)).isEqualTo(OptionalInt.of(4));
+    }
+
+    @Test
+    void friendsOfFriendsStopsAtTheLimit() {
+        List<UUID> edges = new ArrayList<>();
+        edges.add(a);
+        edges.add(b);
+        for (int i = 0; i < 10; i++) {
+            edges.add(b);
+            edges.add(UUID.randomUUID());
+        }
+        FriendGraphIndex index = loaded(100, edges.toArray(UUID[]::new));
+
+        assertThat(index.friendsOfFriends(a, 3)).hasSize(3);
+    }
+
+    @Test
+    void unknownCatsHaveNoFriends() {
+        FriendGraphIndex index = loaded(100, a, b);
+
+        assertThat(index.friends(c)).isEmpty();
+        assertThat(index.mutualFriends(a, c)).isEmpty();
+        assertThat(index.separation(a, c, 6)).isEmpty();
+    }
+
+    // Every pair of ids is one friendship, loaded as the two directed rows of cat_friends.
+    private static FriendGraphIndex loaded(int maxChangedNodes, UUID... pairs) {
+        FriendshipRepository repository = new FriendshipRepository(null, 1) {
+            @Override
+            public void forEachEdge(BiConsumer<UUID, UUID> consumer) {
+                for (int i = 0; i < pairs.length; i += 2) {
+                    consumer.accept(pairs[i], pairs[i + 1]);
+                    consumer.accept(pairs[i + 1], pairs[i]);
+                }
+            }
+        };
+        FriendGraphIndex index = new FriendGraphIndex(repository, maxChangedNodes);
+        index.load();
+        return index;
+    }
+}